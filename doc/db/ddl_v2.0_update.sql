@@ -62,4 +62,55 @@ ALTER TABLE `sys_user`
 ADD COLUMN `salt`  varchar(12) NULL COMMENT '盐' AFTER `pwd`;
 
 ALTER TABLE `sys_user`
-ADD COLUMN `is_admin`  char(1) NULL COMMENT '超级管理员' AFTER `valid_uid`;
\ No newline at end of file
+ADD COLUMN `is_admin`  char(1) NULL COMMENT '超级管理员' AFTER `valid_uid`;
+
+-- 消息记录游标分页
+ALTER TABLE `wechat_req_msg_log`
+ADD INDEX `idx_account_in_time` (`public_account_id`, `in_time`, `id`) USING BTREE ;
+
+-- 消息记录按月分区
+-- 新分区由MonthPartitionManager每天凌晨预建；过期分区删除默认关闭（wechat.msglog.retentionMonths）
+-- 分区字段必须包含在主键中；大表重建耗时较长，建议用pt-online-schema-change执行
+UPDATE `wechat_req_msg_log` SET `in_time` = IFNULL(`create_time`, NOW()) WHERE `in_time` IS NULL;
+
+ALTER TABLE `wechat_req_msg_log`
+MODIFY COLUMN `in_time`  datetime NOT NULL,
+DROP PRIMARY KEY,
+ADD PRIMARY KEY (`id`, `in_time`);
+
+-- 按现有数据的月份范围建分区：最早一个月到下个月每月一个分区（最早的分区包含更早的数据），pmax为空
+DROP PROCEDURE IF EXISTS `tmp_partition_req_msg_log`;
+DELIMITER ;;
+CREATE PROCEDURE `tmp_partition_req_msg_log`()
+BEGIN
+  DECLARE m DATE;
+  DECLARE last_month DATE;
+  DECLARE parts TEXT DEFAULT '';
+  SELECT DATE_FORMAT(IFNULL(MIN(`in_time`), NOW()), '%Y-%m-01') INTO m FROM `wechat_req_msg_log`;
+  SET last_month = DATE_FORMAT(NOW() + INTERVAL 1 MONTH, '%Y-%m-01');
+  WHILE m <= last_month DO
+    SET parts = CONCAT(parts, 'PARTITION p', DATE_FORMAT(m, '%Y%m'),
+        ' VALUES LESS THAN (TO_DAYS(''', m + INTERVAL 1 MONTH, ''')), ');
+    SET m = m + INTERVAL 1 MONTH;
+  END WHILE;
+  SET @partition_ddl = CONCAT('ALTER TABLE `wechat_req_msg_log` PARTITION BY RANGE (TO_DAYS(`in_time`)) (',
+      parts, 'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+  PREPARE stmt FROM @partition_ddl;
+  EXECUTE stmt;
+  DEALLOCATE PREPARE stmt;
+END;;
+DELIMITER ;
+CALL `tmp_partition_req_msg_log`();
+DROP PROCEDURE `tmp_partition_req_msg_log`;
+
+-- 大字段压缩存储（@Mapper compress），text改为blob后原有数据按原文读取，不需要转换
+ALTER TABLE `wechat_req_msg_log`
+MODIFY COLUMN `req_xml`  longblob NULL COMMENT 'gzip压缩',
+MODIFY COLUMN `resp_xml`  longblob NULL COMMENT 'gzip压缩';
+
+ALTER TABLE `wechat_material`
+MODIFY COLUMN `xml_data`  longblob NOT NULL COMMENT 'gzip压缩';
+
+-- 缓存管理权限（系统管理员）
+INSERT INTO `sys_menu` VALUES ('4f1c2d8ef2e811e5a4c13c970e59bd99', '9c352aa77e5811e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1', '缓存管理', '/admin/sys/cache/stats', '', 'sys_cache_view,sys_cache_edit', '2', '0', '80', '2016-03-27 10:00:00', '', '1');
+INSERT INTO `sys_role_menu` VALUES ('1', '4f1c2d8ef2e811e5a4c13c970e59bd99');
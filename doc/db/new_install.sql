@@ -125,6 +125,7 @@ INSERT INTO `sys_menu` VALUES ('28b9ea2bbace11e58a423c970e59bd99', '327189d0b83f
 INSERT INTO `sys_menu` VALUES ('327189d0b83f11e597cbb8975ab8baa1', '9c352aa77e5811e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1', '角色管理', '/admin/sys/role', 'icon-unlock menu-icon', '', '2', '1', '40', '2016-01-14 22:44:22', '', '1');
 INSERT INTO `sys_menu` VALUES ('3ac5aa5a7e5911e59ba400ffac6fdde1', '012ccad97e5911e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1,012ccad97e5911e59ba400ffac6fdde1', '查看', '/admin/sys/menu', null, null, '3', '1', '10', '2016-01-09 02:23:10', null, '1');
 INSERT INTO `sys_menu` VALUES ('47074ab6bac211e586873c970e59bd99', '00e0eaf5bac211e586873c970e59bd99', '50db352e774511e58d9e00ffac6fdde1,00e0eaf5bac211e586873c970e59bd99', '查看', '/admin/wechat/action/keyword', null, 'admin_wechat_action_keyword_view,admin_wechat_action_keyword_edit', '3', '1', '1', '2016-01-14 21:25:28', null, '1');
+INSERT INTO `sys_menu` VALUES ('4f1c2d8ef2e811e5a4c13c970e59bd99', '9c352aa77e5811e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1', '缓存管理', '/admin/sys/cache/stats', '', 'sys_cache_view,sys_cache_edit', '2', '0', '80', '2016-03-27 10:00:00', '', '1');
 INSERT INTO `sys_menu` VALUES ('50db352e774511e58d9e00ffac6fdde1', '', '', '微信管理', '/admin/wechat', '', '', '1', '1', '2', '2016-01-14 21:53:12', '', '1');
 INSERT INTO `sys_menu` VALUES ('52d0c17b7e5911e59ba400ffac6fdde1', '012ccad97e5911e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1,012ccad97e5911e59ba400ffac6fdde1', '添加', '/admin/sys/menu/form', null, null, '3', '1', '20', '2016-01-13 23:15:42', null, '1');
 INSERT INTO `sys_menu` VALUES ('598e189abacb11e58a423c970e59bd99', '9c352aa77e5811e59ba400ffac6fdde1', '9c352aa77e5811e59ba400ffac6fdde1', '系统监控', null, 'icon-credit-card menu-icon', null, '2', '1', '70', '2016-03-17 23:52:34', null, '1');
@@ -192,6 +193,7 @@ CREATE TABLE `sys_role_menu` (
 -- ----------------------------
 INSERT INTO `sys_role_menu` VALUES ('1', '012ccad97e5911e59ba400ffac6fdde1');
 INSERT INTO `sys_role_menu` VALUES ('1', '3ac5aa5a7e5911e59ba400ffac6fdde1');
+INSERT INTO `sys_role_menu` VALUES ('1', '4f1c2d8ef2e811e5a4c13c970e59bd99');
 INSERT INTO `sys_role_menu` VALUES ('1', '50db352e774511e58d9e00ffac6fdde1');
 INSERT INTO `sys_role_menu` VALUES ('1', '52d0c17b7e5911e59ba400ffac6fdde1');
 INSERT INTO `sys_role_menu` VALUES ('1', '5c33d2357e5811e59ba400ffac6fdde1');
@@ -319,7 +321,7 @@ CREATE TABLE `wechat_material` (
   `id` varchar(32) NOT NULL,
   `in_time` datetime DEFAULT NULL,
   `msg_type` varchar(255) DEFAULT NULL,
-  `xml_data` longtext NOT NULL,
+  `xml_data` longblob NOT NULL COMMENT 'gzip压缩',
   `user_id` varchar(32) DEFAULT NULL,
   PRIMARY KEY (`id`),
   KEY `FK717D3620D3E19CF1` (`user_id`),
@@ -459,19 +461,45 @@ CREATE TABLE `wechat_req_msg_log` (
   `create_time` datetime DEFAULT NULL,
   `event_type` varchar(255) DEFAULT NULL,
   `from_user_name` varchar(255) DEFAULT NULL,
-  `in_time` datetime DEFAULT NULL,
+  `in_time` datetime NOT NULL,
   `msg_id` bigint(20) DEFAULT NULL,
   `req_type` varchar(255) DEFAULT NULL,
-  `req_xml` longtext,
+  `req_xml` longblob COMMENT 'gzip压缩',
   `resp_time` datetime DEFAULT NULL,
-  `resp_xml` longtext,
+  `resp_xml` longblob COMMENT 'gzip压缩',
   `to_user_name` varchar(255) DEFAULT NULL,
   `public_account_id` varchar(32) NOT NULL,
-  PRIMARY KEY (`id`),
+  PRIMARY KEY (`id`, `in_time`),
   KEY `FK7068134C9F275FAE` (`public_account_id`),
-  KEY `FK7068134C46F171D4` (`public_account_id`)
+  KEY `FK7068134C46F171D4` (`public_account_id`),
+  KEY `idx_account_in_time` (`public_account_id`, `in_time`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 ROW_FORMAT=DYNAMIC;
 
+-- 按现有数据的月份范围建分区：最早一个月到下个月每月一个分区（最早的分区包含更早的数据），pmax为空
+DROP PROCEDURE IF EXISTS `tmp_partition_req_msg_log`;
+DELIMITER ;;
+CREATE PROCEDURE `tmp_partition_req_msg_log`()
+BEGIN
+  DECLARE m DATE;
+  DECLARE last_month DATE;
+  DECLARE parts TEXT DEFAULT '';
+  SELECT DATE_FORMAT(IFNULL(MIN(`in_time`), NOW()), '%Y-%m-01') INTO m FROM `wechat_req_msg_log`;
+  SET last_month = DATE_FORMAT(NOW() + INTERVAL 1 MONTH, '%Y-%m-01');
+  WHILE m <= last_month DO
+    SET parts = CONCAT(parts, 'PARTITION p', DATE_FORMAT(m, '%Y%m'),
+        ' VALUES LESS THAN (TO_DAYS(''', m + INTERVAL 1 MONTH, ''')), ');
+    SET m = m + INTERVAL 1 MONTH;
+  END WHILE;
+  SET @partition_ddl = CONCAT('ALTER TABLE `wechat_req_msg_log` PARTITION BY RANGE (TO_DAYS(`in_time`)) (',
+      parts, 'PARTITION pmax VALUES LESS THAN MAXVALUE)');
+  PREPARE stmt FROM @partition_ddl;
+  EXECUTE stmt;
+  DEALLOCATE PREPARE stmt;
+END;;
+DELIMITER ;
+CALL `tmp_partition_req_msg_log`();
+DROP PROCEDURE `tmp_partition_req_msg_log`;
+
 -- ----------------------------
 -- Records of wechat_req_msg_log
 -- ----------------------------
@@ -1,13 +1,19 @@
-
 package com.fengjx.commons.plugin.cache;
 
 import com.fengjx.commons.plugin.cache.memory.MemoryCache;
+import com.fengjx.commons.plugin.cache.memory.MemoryCacheConfig;
+import com.fengjx.commons.system.exception.MyRuntimeException;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 缓存工厂
+ * <p>
+ * 缓存按名称注册，内存缓存通过{@link #registerMemoryCache(MemoryCacheConfig)}按配置创建，
+ * {@link CacheName}为内置缓存的名称。
  *
  * @author fengjx.
  * @date：2015/6/9 0009
@@ -15,11 +21,12 @@ import java.util.Map;
 public class CacheFactory {
 
     private static class CacheFactoryHolder {
-        private static Map<CacheName, SimpleCache> cacheMaps;
+        private static final Map<String, SimpleCache> cacheMaps = new ConcurrentHashMap<>();
 
         static {
-            cacheMaps = new HashMap<>();
-            cacheMaps.put(CacheName.CACHE_NAME_MEMORY, MemoryCache.getInstance());
+            MemoryCacheConfig config = new MemoryCacheConfig(CacheName.CACHE_NAME_MEMORY.name(),
+                    5, TimeUnit.MINUTES);
+            cacheMaps.put(config.getName(), new MemoryCache(config));
         }
     }
 
@@ -29,11 +36,48 @@ public class CacheFactory {
      * @return
      */
     public static SimpleCache getDefaultSimpleCache() {
-        return CacheFactoryHolder.cacheMaps.get(CacheName.CACHE_NAME_MEMORY);
+        return getSimpleCache(CacheName.CACHE_NAME_MEMORY);
     }
 
     public static SimpleCache getSimpleCache(CacheName cacheName) {
-        return CacheFactoryHolder.cacheMaps.get(cacheName);
+        return getSimpleCache(cacheName.name());
+    }
+
+    public static SimpleCache getSimpleCache(String name) {
+        return CacheFactoryHolder.cacheMaps.get(name);
+    }
+
+    /**
+     * 注册缓存，名称已存在时替换
+     *
+     * @param name 缓存名称
+     * @param cache 缓存实现
+     */
+    public static void register(String name, SimpleCache cache) {
+        CacheFactoryHolder.cacheMaps.put(name, cache);
+    }
+
+    /**
+     * 按配置创建并注册内存缓存，名称已存在时返回已注册的缓存
+     *
+     * @param config 缓存配置，name不能为空
+     * @return
+     */
+    public static MemoryCache registerMemoryCache(MemoryCacheConfig config) {
+        SimpleCache cache = CacheFactoryHolder.cacheMaps.computeIfAbsent(config.getName(),
+                name -> new MemoryCache(config));
+        if (!(cache instanceof MemoryCache)) {
+            throw new MyRuntimeException("cache [" + config.getName()
+                    + "] is not a memory cache");
+        }
+        return (MemoryCache) cache;
+    }
+
+    /**
+     * 已注册的缓存
+     */
+    public static Map<String, SimpleCache> getCaches() {
+        return Collections.unmodifiableMap(CacheFactoryHolder.cacheMaps);
     }
 
 }
@@ -0,0 +1,110 @@
+package com.fengjx.commons.plugin.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存数据加载统计
+ * <p>
+ * 加载耗时按固定区间计数，百分位取所在区间的上限（毫秒），不保存每次耗时，记录开销固定。
+ *
+ * @author fengjx.
+ * @date：2016/3/25
+ */
+public class CacheLoadStats {
+
+    // 耗时区间上限（毫秒）
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000,
+            10000, 30000};
+
+    // 最后一个为超过30秒
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS.length + 1);
+
+    private final LongAdder requestCount = new LongAdder();
+
+    private final LongAdder failureCount = new LongAdder();
+
+    private final LongAdder totalNanos = new LongAdder();
+
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次带数据加载器的读取
+     */
+    public void recordRequest() {
+        requestCount.increment();
+    }
+
+    /**
+     * 记录一次加载
+     *
+     * @param nanos 耗时（纳秒）
+     * @param success 是否成功
+     */
+    public void recordLoad(long nanos, boolean success) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int i = 0;
+        while (i < BUCKETS.length && millis >= BUCKETS[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (!success) {
+            failureCount.increment();
+        }
+    }
+
+    public long getLoadCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 加载耗时百分位（毫秒），取所在区间的上限
+     *
+     * @param percent 0-100
+     */
+    public long percentile(double percent) {
+        long total = getLoadCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percent / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return BUCKETS[i];
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    public Map<String, Object> toMap() {
+        long requests = requestCount.sum();
+        long loads = getLoadCount();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("loaderRequestCount", requests);
+        // 带数据加载器的读取中不需要加载的比例
+        res.put("loaderHitRate", requests == 0 ? 1.0 : Math.max(0, requests - loads)
+                / (double) requests);
+        res.put("loadCount", loads);
+        res.put("loadFailureCount", failureCount.sum());
+        res.put("averageLoadMillis",
+                loads == 0 ? 0.0 : totalNanos.sum() / 1000000.0 / loads);
+        res.put("p50LoadMillis", percentile(50));
+        res.put("p90LoadMillis", percentile(90));
+        res.put("p99LoadMillis", percentile(99));
+        res.put("maxLoadMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        return res;
+    }
+
+}
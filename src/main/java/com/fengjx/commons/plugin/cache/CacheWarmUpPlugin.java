@@ -0,0 +1,163 @@
+package com.fengjx.commons.plugin.cache;
+
+import com.fengjx.commons.plugin.IPlugin;
+import com.fengjx.commons.utils.LogUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热插件
+ * <p>
+ * 启动时并行执行warmers（{@link CacheWarmer}），预热完成或超过timeBudgetMillis后标记为就绪，
+ * 负载均衡通过就绪检查（{@link #isReady()}）判断是否转发请求。超时未完成的预热在后台继续执行，
+ * 未预热的数据在使用时加载。需在数据库和缓存插件之后启动。
+ *
+ * @author fengjx.
+ * @date：2016/3/26
+ */
+public class CacheWarmUpPlugin implements IPlugin {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheWarmUpPlugin.class);
+
+    private boolean enabled = true;
+
+    // 预热线程数
+    private int threads = 4;
+
+    // 预热时间上限（毫秒），超过后不再等待，直接标记为就绪
+    private long timeBudgetMillis = 30000;
+
+    private List<CacheWarmer> warmers = Collections.emptyList();
+
+    private volatile boolean ready;
+
+    private volatile long startTime;
+
+    private volatile long readyTime;
+
+    // 预热结果，key为缓存名称（预热类名）
+    private final Map<String, String> results = new ConcurrentHashMap<>();
+
+    @Override
+    public void start() {
+        startTime = System.currentTimeMillis();
+        if (!enabled || warmers.isEmpty()) {
+            markReady();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(threads, warmers.size())),
+                new ThreadFactoryBuilder().setNameFormat("cache-warmup-%d").setDaemon(true).build());
+        for (CacheWarmer warmer : warmers) {
+            executor.execute(() -> warm(warmer));
+        }
+        // 已提交的预热继续执行，执行完后线程退出
+        executor.shutdown();
+        Thread thread = new Thread(() -> await(executor), "cache-warmup-await");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warm(CacheWarmer warmer) {
+        String name = name(warmer);
+        long start = System.currentTimeMillis();
+        try {
+            warmer.warm();
+            results.put(name, "ok " + (System.currentTimeMillis() - start) + "ms");
+        } catch (RuntimeException e) {
+            results.put(name, "failed " + e.getMessage());
+            LogUtil.error(LOG, "预热缓存" + name + "失败", e);
+        }
+    }
+
+    private void await(ExecutorService executor) {
+        try {
+            if (!executor.awaitTermination(timeBudgetMillis, TimeUnit.MILLISECONDS)) {
+                List<String> unfinished = new ArrayList<>();
+                for (CacheWarmer warmer : warmers) {
+                    if (!results.containsKey(name(warmer))) {
+                        unfinished.add(name(warmer));
+                    }
+                }
+                LogUtil.warn(LOG, "缓存预热超过" + timeBudgetMillis + "ms，未完成：" + unfinished);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            markReady();
+        }
+    }
+
+    private void markReady() {
+        readyTime = System.currentTimeMillis();
+        ready = true;
+        LogUtil.info(LOG, "缓存预热结束，耗时" + (readyTime - startTime) + "ms：" + results);
+    }
+
+    private static String name(CacheWarmer warmer) {
+        return warmer.getCacheName() + "(" + warmer.getClass().getSimpleName() + ")";
+    }
+
+    /**
+     * 是否就绪（预热完成或超时）
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 预热状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("ready", ready);
+        res.put("elapsedMillis", (ready ? readyTime : System.currentTimeMillis()) - startTime);
+        res.put("warmers", new LinkedHashMap<>(results));
+        return res;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getTimeBudgetMillis() {
+        return timeBudgetMillis;
+    }
+
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    public List<CacheWarmer> getWarmers() {
+        return warmers;
+    }
+
+    public void setWarmers(List<CacheWarmer> warmers) {
+        this.warmers = null == warmers ? Collections.<CacheWarmer>emptyList() : warmers;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.fengjx.commons.plugin.cache;
+
+/**
+ * 缓存预热
+ * <p>
+ * 实现类注册为spring bean后，可以通过缓存管理按缓存名称预热。
+ *
+ * @author fengjx.
+ * @date：2016/3/25
+ */
+public interface CacheWarmer {
+
+    /**
+     * 预热的缓存名称
+     */
+    String getCacheName();
+
+    /**
+     * 加载常用数据到缓存
+     */
+    void warm();
+
+}
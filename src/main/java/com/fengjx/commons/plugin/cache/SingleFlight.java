@@ -0,0 +1,149 @@
+package com.fengjx.commons.plugin.cache;
+
+import com.fengjx.commons.system.exception.MyRuntimeException;
+import com.fengjx.commons.utils.LogUtil;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 缓存加载协调
+ * <p>
+ * 1. {@link #load(Object, Supplier)}：相同key并发加载时只有一个线程调用数据加载器，其他线程等待同一个结果；<br>
+ * 2. 数据加载器返回null时缓存{@link #NULL}占位，由各缓存实现设置较短的过期时间，不存在的key不会每次都查库；<br>
+ * 3. {@link #refresh(Object, Runnable)}：缓存快过期时由后台线程重新加载，刷新期间仍返回旧值。
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class SingleFlight {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SingleFlight.class);
+
+    /**
+     * 空结果占位
+     */
+    public static final Object NULL = NullValue.INSTANCE;
+
+    // 提前刷新线程池，队列满时放弃本次刷新，等缓存过期后同步加载
+    private static final ExecutorService REFRESH_EXECUTOR = new ThreadPoolExecutor(2, 2, 60,
+            TimeUnit.SECONDS, new ArrayBlockingQueue<>(1000),
+            new ThreadFactoryBuilder().setNameFormat("cache-refresh-%d").setDaemon(true).build());
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 加载数据，相同key同时只有一个线程执行loader，其他线程等待并共享结果（包括异常）
+     *
+     * @param key 加载key
+     * @param loader 数据加载，返回值可以是{@link #NULL}
+     * @return loader的返回值
+     */
+    public Object load(Object key, Supplier<Object> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = flights.putIfAbsent(key, future);
+        if (null != running) {
+            return await(running);
+        }
+        try {
+            Object value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, future);
+        }
+    }
+
+    /**
+     * 后台刷新，相同key已经在刷新时忽略
+     *
+     * @param key 刷新key
+     * @param refresher 加载数据并写入缓存
+     */
+    public void refresh(Object key, Runnable refresher) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    refresher.run();
+                } catch (Exception e) {
+                    LogUtil.warn(LOG, "刷新缓存失败，key=" + key, e);
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * 转换空结果占位
+     */
+    public static Object wrap(Object value) {
+        return null == value ? NULL : value;
+    }
+
+    /**
+     * 还原空结果占位
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T unwrap(Object value) {
+        return value instanceof NullValue ? null : (T) value;
+    }
+
+    public static boolean isNull(Object value) {
+        return value instanceof NullValue;
+    }
+
+    private static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MyRuntimeException(cause);
+        }
+    }
+
+    /**
+     * 空结果占位，ehcache溢出到磁盘时会序列化
+     */
+    private static final class NullValue implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final NullValue INSTANCE = new NullValue();
+
+        private Object readResolve() {
+            return INSTANCE;
+        }
+    }
+
+}
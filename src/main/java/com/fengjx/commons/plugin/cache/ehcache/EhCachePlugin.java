@@ -18,6 +18,10 @@ public class EhCachePlugin implements IPlugin {
     private CacheManager cacheManager;
     private String configurationFileName;
     private URL configurationFileURL;
+    // 空结果缓存时间（秒）
+    private int nullTimeToLiveSeconds = 60;
+    // 提前刷新比例，0表示不刷新
+    private double refreshAheadFactor = 0;
 
     public EhCachePlugin() {
 
@@ -38,7 +42,7 @@ public class EhCachePlugin implements IPlugin {
     @Override
     public void start() {
         createCacheManager();
-        EhCacheUtil.init(cacheManager);
+        EhCacheUtil.init(cacheManager, nullTimeToLiveSeconds, refreshAheadFactor);
     }
 
     private void createCacheManager() {
@@ -79,4 +83,20 @@ public class EhCachePlugin implements IPlugin {
     public void setConfigurationFileURL(URL configurationFileURL) {
         this.configurationFileURL = configurationFileURL;
     }
+
+    public int getNullTimeToLiveSeconds() {
+        return nullTimeToLiveSeconds;
+    }
+
+    public void setNullTimeToLiveSeconds(int nullTimeToLiveSeconds) {
+        this.nullTimeToLiveSeconds = nullTimeToLiveSeconds;
+    }
+
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
 }
@@ -1,7 +1,11 @@
 
 package com.fengjx.commons.plugin.cache.ehcache;
 
+import com.fengjx.commons.plugin.cache.CacheLoadStats;
 import com.fengjx.commons.plugin.cache.IDataLoader;
+import com.fengjx.commons.plugin.cache.SimpleCache;
+import com.fengjx.commons.plugin.cache.SingleFlight;
+import com.fengjx.commons.system.exception.MyRuntimeException;
 
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
@@ -10,10 +14,19 @@ import net.sf.ehcache.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 封装ehcahce
+ * <p>
+ * get(cacheName, key, dataLoader)：相同key并发只加载一次；加载结果为null时缓存占位nullTimeToLiveSeconds秒；
+ * refreshAheadFactor大于0时，设置了timeToLive的缓存在剩余存活时间不足该比例时后台刷新，eternal缓存不刷新。
+ * <p>
+ * 通过{@link #distribute(String, SimpleCache)}注册的缓存（集群共享的两级缓存）不再使用ehcache，
+ * 读写、删除都委托给注册的实现，key转为字符串。
  *
  * @author fengjx.
  * @date：2015/6/3 0003
@@ -24,14 +37,40 @@ public class EhCacheUtil {
 
     private static final Logger LOG = LoggerFactory.getLogger(EhCacheUtil.class);
 
+    private static final SingleFlight FLIGHT = new SingleFlight();
+
+    // 空结果缓存时间（秒）
+    private static volatile int nullTimeToLiveSeconds = 60;
+
+    // 提前刷新比例，0表示不刷新
+    private static volatile double refreshAheadFactor = 0;
+
+    private static final Map<String, SimpleCache> DISTRIBUTED = new ConcurrentHashMap<>();
+
+    private static final Map<String, CacheLoadStats> LOAD_STATS = new ConcurrentHashMap<>();
+
     static void init(CacheManager cacheManager) {
         EhCacheUtil.cacheManager = cacheManager;
     }
 
+    static void init(CacheManager cacheManager, int nullTimeToLiveSeconds,
+            double refreshAheadFactor) {
+        EhCacheUtil.nullTimeToLiveSeconds = nullTimeToLiveSeconds;
+        EhCacheUtil.refreshAheadFactor = refreshAheadFactor;
+        init(cacheManager);
+    }
+
     public static CacheManager getCacheManager() {
         return cacheManager;
     }
 
+    /**
+     * 指定缓存改由cache实现，见{@link com.fengjx.commons.plugin.cache.redis.TwoLevelCachePlugin}
+     */
+    public static void distribute(String cacheName, SimpleCache cache) {
+        DISTRIBUTED.put(cacheName, cache);
+    }
+
     static Cache getOrAddCache(String cacheName) {
         Cache cache = cacheManager.getCache(cacheName);
         if (cache == null) {
@@ -49,52 +88,135 @@ public class EhCacheUtil {
     }
 
     public static void put(String cacheName, Object key, Object value) {
+        SimpleCache distributed = DISTRIBUTED.get(cacheName);
+        if (null != distributed) {
+            distributed.add(String.valueOf(key), value);
+            return;
+        }
         getOrAddCache(cacheName).put(new Element(key, value));
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> T get(String cacheName, Object key) {
+        SimpleCache distributed = DISTRIBUTED.get(cacheName);
+        if (null != distributed) {
+            return distributed.get(String.valueOf(key));
+        }
         Element element = getOrAddCache(cacheName).get(key);
-        return element != null ? (T) element.getObjectValue() : null;
+        return element != null ? SingleFlight.unwrap(element.getObjectValue()) : null;
+    }
+
+    /**
+     * 注册的两级缓存，没有时返回null，见{@link #distribute(String, SimpleCache)}
+     */
+    public static SimpleCache getDistributed(String cacheName) {
+        return DISTRIBUTED.get(cacheName);
     }
 
+    /**
+     * get(cacheName, key, dataLoader)的加载统计
+     */
+    public static CacheLoadStats getLoadStats(String cacheName) {
+        return LOAD_STATS.computeIfAbsent(cacheName, name -> new CacheLoadStats());
+    }
+
+    /**
+     * 本地ehcache中的key，两级缓存不支持
+     */
     @SuppressWarnings("rawtypes")
     public static List getKeys(String cacheName) {
         return getOrAddCache(cacheName).getKeys();
     }
 
     public static void remove(String cacheName, Object key) {
+        SimpleCache distributed = DISTRIBUTED.get(cacheName);
+        if (null != distributed) {
+            distributed.remove(String.valueOf(key));
+            return;
+        }
         getOrAddCache(cacheName).remove(key);
     }
 
     public static void removeAll(String cacheName) {
+        SimpleCache distributed = DISTRIBUTED.get(cacheName);
+        if (null != distributed) {
+            distributed.removeAll();
+            return;
+        }
         getOrAddCache(cacheName).removeAll();
     }
 
-    @SuppressWarnings("unchecked")
-    public static <T> T get(String cacheName, Object key, IDataLoader<T> dataLoader) {
-        T data = get(cacheName, key);
-        if (data == null) {
-            data = dataLoader.load();
-            put(cacheName, key, data);
+    /**
+     * 获得缓存，当缓存不存在时，从数据加载器取数据
+     *
+     * @param cacheName 缓存名称
+     * @param key 缓存key
+     * @param loader 数据加载器，相同key并发时只有一个线程调用
+     * @return
+     */
+    public static <T> T get(String cacheName, Object key, IDataLoader<T> loader) {
+        CacheLoadStats stats = getLoadStats(cacheName);
+        stats.recordRequest();
+        IDataLoader<T> dataLoader = () -> {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                T data = loader.load();
+                success = true;
+                return data;
+            } finally {
+                stats.recordLoad(System.nanoTime() - start, success);
+            }
+        };
+        SimpleCache distributed = DISTRIBUTED.get(cacheName);
+        if (null != distributed) {
+            return distributed.get(String.valueOf(key), dataLoader);
         }
-        return data;
+        Cache cache = getOrAddCache(cacheName);
+        Object flightKey = Arrays.asList(cacheName, key);
+        Element element = cache.get(key);
+        if (element != null) {
+            if (needsRefresh(element)) {
+                FLIGHT.refresh(flightKey, () -> load(cache, key, dataLoader));
+            }
+            return SingleFlight.unwrap(element.getObjectValue());
+        }
+        return SingleFlight.unwrap(FLIGHT.load(flightKey, () -> {
+            // 等待期间其他线程可能已经加载完成
+            Element loaded = cache.get(key);
+            return loaded != null ? loaded.getObjectValue() : load(cache, key, dataLoader);
+        }));
     }
 
-    @SuppressWarnings("unchecked")
     public static <T> T get(String cacheName, Object key,
             Class<? extends IDataLoader<T>> dataLoaderClass) {
-        T data = get(cacheName, key);
-        if (data == null) {
+        return get(cacheName, key, () -> {
             try {
-                IDataLoader<T> dataLoader = dataLoaderClass.newInstance();
-                data = dataLoader.load();
-                put(cacheName, key, data);
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                return dataLoaderClass.newInstance().load();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new MyRuntimeException(e);
             }
+        });
+    }
+
+    private static Object load(Cache cache, Object key, IDataLoader<?> dataLoader) {
+        Object value = SingleFlight.wrap(dataLoader.load());
+        Element element = new Element(key, value);
+        if (SingleFlight.isNull(value)) {
+            element.setEternal(false);
+            element.setTimeToIdle(0);
+            element.setTimeToLive(nullTimeToLiveSeconds);
+        }
+        cache.put(element);
+        return value;
+    }
+
+    private static boolean needsRefresh(Element element) {
+        if (refreshAheadFactor <= 0 || element.isEternal() || element.getTimeToLive() <= 0
+                || SingleFlight.isNull(element.getObjectValue())) {
+            return false;
         }
-        return data;
+        long remaining = element.getExpirationTime() - System.currentTimeMillis();
+        return remaining < element.getTimeToLive() * 1000L * refreshAheadFactor;
     }
 
 }
@@ -46,7 +46,7 @@ public class SimpleEhCache implements SimpleCache {
     @Override
     public boolean removeAll() {
         EhCacheUtil.removeAll(CACHE_NAME);
-        return false;
+        return true;
     }
 
     /**
@@ -57,8 +57,7 @@ public class SimpleEhCache implements SimpleCache {
      */
     @Override
     public <T> T get(String key) {
-        EhCacheUtil.get(CACHE_NAME, key);
-        return null;
+        return EhCacheUtil.get(CACHE_NAME, key);
     }
 
     /**
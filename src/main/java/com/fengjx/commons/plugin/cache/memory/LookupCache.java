@@ -0,0 +1,132 @@
+package com.fengjx.commons.plugin.cache.memory;
+
+import com.fengjx.commons.plugin.cache.IDataLoader;
+import com.fengjx.commons.plugin.cache.SimpleCache;
+import com.fengjx.commons.system.exception.MyRuntimeException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 第三方接口查询结果缓存
+ * <p>
+ * 按key缓存接口返回结果，超过maximumSize时淘汰最近最少使用的数据；
+ * 接口返回null或抛出异常时也缓存（negativeTtl），避免接口故障期间每条消息都去请求；
+ * 相同key的并发请求只有一个线程去调用接口，其他线程等待结果。
+ *
+ * @author fengjx.
+ * @date：2016/3/18
+ */
+public class LookupCache implements SimpleCache {
+
+    private final Cache<String, Entry> cache;
+
+    private final long negativeTtlMillis;
+
+    /**
+     * @param ttl 正常结果缓存时间
+     * @param negativeTtl 空结果、异常缓存时间
+     * @param timeUnit 时间单位
+     * @param maximumSize 最大缓存条数
+     */
+    public LookupCache(long ttl, long negativeTtl, TimeUnit timeUnit, long maximumSize) {
+        this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttl, timeUnit)
+                .maximumSize(maximumSize).build();
+        this.negativeTtlMillis = timeUnit.toMillis(negativeTtl);
+    }
+
+    @Override
+    public boolean add(String key, Object value) {
+        cache.put(key, new Entry(value, null, 0));
+        return true;
+    }
+
+    @Override
+    public boolean remove(String key) {
+        cache.invalidate(key);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll() {
+        cache.invalidateAll();
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        Entry entry = cache.getIfPresent(key);
+        if (null == entry || entry.isExpired() || null != entry.error) {
+            return null;
+        }
+        return (T) entry.value;
+    }
+
+    /**
+     * 获得缓存，当缓存不存在时，从数据加载器取数据
+     * <p>
+     * 数据加载器抛出的异常在negativeTtl内会直接重新抛出，不再调用数据加载器
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, IDataLoader<T> dataLoader) {
+        Entry entry = load(key, dataLoader);
+        if (entry.isExpired()) {
+            cache.asMap().remove(key, entry);
+            entry = load(key, dataLoader);
+        }
+        if (null != entry.error) {
+            throw entry.error instanceof RuntimeException ? (RuntimeException) entry.error
+                    : new MyRuntimeException(entry.error);
+        }
+        return (T) entry.value;
+    }
+
+    private Entry load(String key, IDataLoader<?> dataLoader) {
+        try {
+            return cache.get(key, () -> {
+                long negativeExpire = System.currentTimeMillis() + negativeTtlMillis;
+                try {
+                    Object value = dataLoader.load();
+                    return new Entry(value, null, null == value ? negativeExpire : 0);
+                } catch (Exception e) {
+                    return new Entry(null, e, negativeExpire);
+                }
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new MyRuntimeException(e.getCause());
+        }
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * 缓存数据
+     */
+    private static class Entry {
+
+        private final Object value;
+
+        private final Exception error;
+
+        // 空结果和异常的过期时间，0表示跟随缓存过期时间
+        private final long expireAt;
+
+        Entry(Object value, Exception error, long expireAt) {
+            this.value = value;
+            this.error = error;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired() {
+            return expireAt > 0 && expireAt < System.currentTimeMillis();
+        }
+    }
+
+}
@@ -1,77 +1,163 @@
 
 package com.fengjx.commons.plugin.cache.memory;
 
+import com.fengjx.commons.plugin.cache.Cache;
+import com.fengjx.commons.plugin.cache.CacheFactory;
+import com.fengjx.commons.plugin.cache.CacheName;
 import com.fengjx.commons.plugin.cache.IDataLoader;
-import com.fengjx.commons.plugin.cache.SimpleCache;
-import com.google.common.cache.Cache;
+import com.fengjx.commons.plugin.cache.SingleFlight;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 基于内存缓存实现
+ * <p>
+ * 1. 每条数据有自己的过期时间（{@link #add(String, Object, int)}），默认为配置的expire，读取时判断过期；<br>
+ * 2. get(key, dataLoader)相同key并发只加载一次，加载结果为null时缓存nullExpire；<br>
+ * 3. refreshAheadFactor大于0时，剩余存活时间不足该比例的数据由后台刷新；<br>
+ * 4. 按条数或权重限制容量，超出时淘汰最近最少使用的数据；<br>
+ * 5. 记录命中、加载、淘汰、过期次数，见{@link #getStats()}。
  */
-public class MemoryCache implements SimpleCache {
+public class MemoryCache implements Cache {
+
+    // 每写入多少次清理一次过期数据
+    private static final int CLEANUP_INTERVAL = 1000;
+
+    private final String name;
 
     /**
      * cache实现
      */
-    private Cache<String, Object> cache;
+    private final com.google.common.cache.Cache<String, Entry> cache;
+
+    private final SingleFlight flight = new SingleFlight();
+
+    private final long expireMillis;
+
+    private final long nullExpireMillis;
+
+    private final double refreshAheadFactor;
+
+    private final AtomicLong writes = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder loadCount = new LongAdder();
+
+    private final LongAdder loadFailureCount = new LongAdder();
+
+    private final LongAdder totalLoadNanos = new LongAdder();
+
+    private final LongAdder evictionCount = new LongAdder();
+
+    private final LongAdder expiredCount = new LongAdder();
 
     /**
      * 构建缓存实例
-     * 
+     *
      * @param duration
      * @param timeUnit
      */
     public MemoryCache(long duration, TimeUnit timeUnit) {
-
-        cache = CacheBuilder.newBuilder().expireAfterWrite(duration, timeUnit).maximumSize(10000)
-                .build();
+        this(new MemoryCacheConfig(null, duration, timeUnit));
     }
 
     /**
-     * 实例holder类
+     * 构建缓存实例
+     *
+     * @param duration 缓存时间
+     * @param nullDuration 空结果缓存时间
+     * @param timeUnit 时间单位
+     * @param refreshAheadFactor 提前刷新比例，0表示不刷新
      */
-    private static class CacheHolder {
-
-        /**
-         * 时间跨度
-         */
-        private static final long duration = 5;
+    public MemoryCache(long duration, long nullDuration, TimeUnit timeUnit,
+            double refreshAheadFactor) {
+        this(config(duration, nullDuration, timeUnit, refreshAheadFactor));
+    }
 
-        /**
-         * 时间单位
-         */
-        private static final TimeUnit timeUnit = TimeUnit.MINUTES;
+    /**
+     * 构建缓存实例
+     *
+     * @param config 缓存配置
+     */
+    public MemoryCache(MemoryCacheConfig config) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        if (config.getMaximumWeight() > 0) {
+            builder.maximumWeight(config.getMaximumWeight()).weigher(
+                    (String key, Entry entry) -> SingleFlight.isNull(entry.value) ? 1
+                            : config.getWeigher().weigh(key, entry.value));
+        } else {
+            builder.maximumSize(config.getMaximumSize());
+        }
+        this.cache = builder.removalListener(notification -> {
+            if (notification.getCause() == RemovalCause.SIZE) {
+                evictionCount.increment();
+            }
+        }).build();
+        this.name = config.getName();
+        this.expireMillis = config.getTimeUnit().toMillis(config.getExpire());
+        this.nullExpireMillis = config.getTimeUnit().toMillis(config.getNullExpire());
+        this.refreshAheadFactor = config.getRefreshAheadFactor();
+    }
 
-        /**
-         * 实例
-         */
-        public static final MemoryCache instance = new MemoryCache(duration, timeUnit);
+    private static MemoryCacheConfig config(long duration, long nullDuration, TimeUnit timeUnit,
+            double refreshAheadFactor) {
+        MemoryCacheConfig config = new MemoryCacheConfig(null, duration, timeUnit);
+        config.setNullExpire(nullDuration);
+        config.setRefreshAheadFactor(refreshAheadFactor);
+        return config;
     }
 
     /**
-     * 获取实例
-     * 
+     * 获取默认实例，见{@link CacheFactory#getDefaultSimpleCache()}
+     *
      * @return
      */
     public static MemoryCache getInstance() {
+        return (MemoryCache) CacheFactory.getSimpleCache(CacheName.CACHE_NAME_MEMORY);
+    }
 
-        return MemoryCache.CacheHolder.instance;
+    public String getName() {
+        return name;
     }
 
     /**
      * 放置缓存
-     * 
+     *
      * @param key
      * @param value
      */
+    @Override
     public boolean add(String key, Object value) {
-        this.cache.put(key, value);
+        put(key, newEntry(value, expireMillis));
+        return true;
+    }
+
+    @Override
+    public boolean add(String key, Object value, int seconds) {
+        put(key, newEntry(value, TimeUnit.SECONDS.toMillis(seconds)));
         return true;
     }
 
+    @Override
+    public boolean update(String key, Object value) {
+        return add(key, value);
+    }
+
+    @Override
+    public boolean update(String key, Object value, int seconds) {
+        return add(key, value, seconds);
+    }
+
     /**
      * 删除缓存
      *
@@ -80,7 +166,7 @@ public class MemoryCache implements SimpleCache {
      */
     @Override
     public boolean remove(String key) {
-        this.cache.put(key, null);
+        this.cache.invalidate(key);
         return true;
     }
 
@@ -91,38 +177,169 @@ public class MemoryCache implements SimpleCache {
      */
     @Override
     public boolean removeAll() {
-        this.cache.cleanUp();
+        this.cache.invalidateAll();
         return true;
     }
 
     /**
      * 返回缓存值
-     * 
+     *
      * @param key
      * @return
      */
-    @SuppressWarnings("unchecked")
+    @Override
     public <T> T get(String key) {
-        return (T) this.cache.getIfPresent(key);
+        Entry entry = getEntry(key);
+        if (null == entry) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return SingleFlight.unwrap(entry.value);
     }
 
     /**
-     * 获得缓存，当缓存不存在时，从数据加载器取数据
+     * 获得缓存，当缓存不存在时，从数据加载器取数据（compute-if-absent，相同key并发只加载一次）
      *
      * @param key
      * @param dataLoader 数据加载器
      * @return
      */
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, IDataLoader<T> dataLoader) {
-        Object o = get(key);
-        if (null != o) {
-            return (T) o;
+        Entry entry = getEntry(key);
+        if (null != entry) {
+            hitCount.increment();
+            if (needsRefresh(entry)) {
+                flight.refresh(key, () -> load(key, dataLoader));
+            }
+            return SingleFlight.unwrap(entry.value);
+        }
+        missCount.increment();
+        return SingleFlight.unwrap(flight.load(key, () -> {
+            // 等待期间其他线程可能已经加载完成
+            Entry loaded = getEntry(key);
+            return null != loaded ? loaded.value : load(key, dataLoader);
+        }));
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String[] keyArr) {
+        Map<String, Object> res = new HashMap<>();
+        for (String key : keyArr) {
+            Object value = get(key);
+            if (null != value) {
+                res.put(key, value);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * 清理过期数据
+     */
+    public void cleanUp() {
+        for (Map.Entry<String, Entry> e : cache.asMap().entrySet()) {
+            if (e.getValue().isExpired() && cache.asMap().remove(e.getKey(), e.getValue())) {
+                expiredCount.increment();
+            }
+        }
+        cache.cleanUp();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        long hits = hitCount.sum();
+        long requests = hits + missCount.sum();
+        long loads = loadCount.sum();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("size", cache.size());
+        res.put("hitCount", hits);
+        res.put("missCount", missCount.sum());
+        res.put("hitRate", requests == 0 ? 1.0 : (double) hits / requests);
+        res.put("loadCount", loads);
+        res.put("loadFailureCount", loadFailureCount.sum());
+        res.put("averageLoadMillis",
+                loads == 0 ? 0.0 : totalLoadNanos.sum() / 1000000.0 / loads);
+        res.put("evictionCount", evictionCount.sum());
+        res.put("expiredCount", expiredCount.sum());
+        return res;
+    }
+
+    private Object load(String key, IDataLoader<?> dataLoader) {
+        long start = System.nanoTime();
+        Object value;
+        try {
+            value = dataLoader.load();
+        } catch (RuntimeException | Error e) {
+            loadFailureCount.increment();
+            throw e;
+        } finally {
+            loadCount.increment();
+            totalLoadNanos.add(System.nanoTime() - start);
+        }
+        Entry entry = newEntry(value, expireMillis);
+        put(key, entry);
+        return entry.value;
+    }
+
+    private void put(String key, Entry entry) {
+        cache.put(key, entry);
+        if (writes.incrementAndGet() % CLEANUP_INTERVAL == 0) {
+            cleanUp();
+        }
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = cache.getIfPresent(key);
+        if (null != entry && entry.isExpired()) {
+            if (cache.asMap().remove(key, entry)) {
+                expiredCount.increment();
+            }
+            return null;
+        }
+        return entry;
+    }
+
+    private Entry newEntry(Object value, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        long ttl = null == value ? nullExpireMillis : ttlMillis;
+        return new Entry(SingleFlight.wrap(value), now, ttl > 0 ? now + ttl : 0);
+    }
+
+    private boolean needsRefresh(Entry entry) {
+        return refreshAheadFactor > 0 && entry.expireAt > 0 && !SingleFlight.isNull(entry.value)
+                && entry.expireAt - System.currentTimeMillis()
+                        < (entry.expireAt - entry.writeTime) * refreshAheadFactor;
+    }
+
+    /**
+     * 缓存数据
+     */
+    private static class Entry {
+
+        private final Object value;
+
+        private final long writeTime;
+
+        // 过期时间，0表示不过期
+        private final long expireAt;
+
+        Entry(Object value, long writeTime, long expireAt) {
+            this.value = value;
+            this.writeTime = writeTime;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired() {
+            return expireAt > 0 && expireAt < System.currentTimeMillis();
         }
-        T t = dataLoader.load();
-        add(key, t);
-        return t;
     }
 
 }
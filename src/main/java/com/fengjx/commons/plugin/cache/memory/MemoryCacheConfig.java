@@ -0,0 +1,141 @@
+package com.fengjx.commons.plugin.cache.memory;
+
+import com.google.common.cache.Weigher;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存缓存配置，见{@link com.fengjx.commons.plugin.cache.CacheFactory#registerMemoryCache(MemoryCacheConfig)}
+ * <p>
+ * maximumWeight大于0时按权重限制容量（maximumSize不生效），默认权重：字符串为长度，byte[]为字节数，
+ * 集合、Map为元素个数，其他对象为1。
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class MemoryCacheConfig {
+
+    /**
+     * 默认权重计算
+     */
+    public static final Weigher<String, Object> DEFAULT_WEIGHER = (key, value) -> {
+        if (value instanceof CharSequence) {
+            return ((CharSequence) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).size();
+        }
+        return 1;
+    };
+
+    /**
+     * 默认空结果缓存时间（秒），不随缓存时间变化，缓存不过期时空结果也会过期
+     */
+    public static final long DEFAULT_NULL_EXPIRE_SECONDS = 60;
+
+    private String name;
+
+    // 默认缓存时间，0表示不过期
+    private long expire;
+
+    // 空结果缓存时间
+    private long nullExpire = DEFAULT_NULL_EXPIRE_SECONDS;
+
+    private TimeUnit timeUnit = TimeUnit.SECONDS;
+
+    // 最多缓存条数
+    private long maximumSize = 10000;
+
+    // 最大总权重，0表示按条数限制
+    private long maximumWeight;
+
+    private Weigher<String, Object> weigher = DEFAULT_WEIGHER;
+
+    // 提前刷新比例，0表示不刷新
+    private double refreshAheadFactor;
+
+    public MemoryCacheConfig() {
+    }
+
+    public MemoryCacheConfig(String name, long expire, TimeUnit timeUnit) {
+        this.name = name;
+        this.expire = expire;
+        this.timeUnit = timeUnit;
+        // 时间单位大于秒时至少为1个单位
+        long defaultNullExpire = Math.max(1,
+                timeUnit.convert(DEFAULT_NULL_EXPIRE_SECONDS, TimeUnit.SECONDS));
+        this.nullExpire = expire > 0 ? Math.min(expire, defaultNullExpire) : defaultNullExpire;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getExpire() {
+        return expire;
+    }
+
+    public void setExpire(long expire) {
+        this.expire = expire;
+    }
+
+    public long getNullExpire() {
+        return nullExpire;
+    }
+
+    public void setNullExpire(long nullExpire) {
+        this.nullExpire = nullExpire;
+    }
+
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    public void setTimeUnit(TimeUnit timeUnit) {
+        this.timeUnit = timeUnit;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    public Weigher<String, Object> getWeigher() {
+        return weigher;
+    }
+
+    public void setWeigher(Weigher<String, Object> weigher) {
+        this.weigher = weigher;
+    }
+
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+}
@@ -0,0 +1,199 @@
+package com.fengjx.commons.plugin.cache.redis;
+
+import com.fengjx.commons.utils.LogUtil;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 两级缓存的redis连接和失效广播
+ * <p>
+ * 缓存修改、删除后通过pub/sub发布失效消息，其他节点收到后删除本地缓存。
+ * 订阅连接断开期间的消息会丢失，因此每次（重新）订阅时清空所有本地缓存。
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class RedisCacheChannel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RedisCacheChannel.class);
+
+    private static final String SEPARATOR = "|";
+
+    // 删除单个key
+    private static final String TYPE_KEY = "K";
+
+    // 清空缓存
+    private static final String TYPE_ALL = "A";
+
+    private static final long RETRY_MILLIS = 5000;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final JedisPool jedisPool;
+
+    private final String keyPrefix;
+
+    private final String channel;
+
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final Subscriber subscriber = new Subscriber();
+
+    private volatile boolean running;
+
+    /**
+     * @param jedisPool redis连接池
+     * @param keyPrefix redis key前缀
+     */
+    public RedisCacheChannel(JedisPool jedisPool, String keyPrefix) {
+        this.jedisPool = jedisPool;
+        this.keyPrefix = StringUtils.defaultString(keyPrefix);
+        this.channel = this.keyPrefix + ":cache:invalidate";
+    }
+
+    void register(TwoLevelCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    Jedis getResource() {
+        return jedisPool.getResource();
+    }
+
+    /**
+     * 缓存在redis中的key
+     */
+    byte[] key(String cacheName, String key) {
+        return (keyPrefix + ":" + cacheName + ":" + key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 删除版本号在redis中的key，key为null时为清空缓存的版本号
+     */
+    byte[] versionKey(String cacheName, String key) {
+        return (keyPrefix + ":version:" + cacheName + (null == key ? "" : ":" + key))
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 缓存在redis中的key通配符
+     */
+    String pattern(String cacheName) {
+        return keyPrefix + ":" + cacheName + ":*";
+    }
+
+    /**
+     * 通知其他节点删除本地缓存
+     *
+     * @param cacheName 缓存名称
+     * @param key 缓存key，null表示清空
+     */
+    void publish(String cacheName, String key) {
+        String message = nodeId + SEPARATOR + cacheName + SEPARATOR
+                + (null == key ? TYPE_ALL : TYPE_KEY + SEPARATOR + key);
+        try (Jedis jedis = getResource()) {
+            jedis.publish(channel, message);
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "发布缓存失效消息失败：" + message, e);
+        }
+    }
+
+    /**
+     * 启动订阅线程
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::subscribe, "cache-invalidate-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (subscriber.isSubscribed()) {
+            subscriber.unsubscribe();
+        }
+    }
+
+    private void subscribe() {
+        while (running) {
+            try (Jedis jedis = getResource()) {
+                clearLocal();
+                LogUtil.info(LOG, "订阅缓存失效消息：" + channel);
+                jedis.subscribe(subscriber, channel);
+            } catch (Exception e) {
+                LogUtil.warn(LOG, "订阅缓存失效消息中断，" + RETRY_MILLIS + "毫秒后重试", e);
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void clearLocal() {
+        for (TwoLevelCache cache : caches.values()) {
+            cache.invalidateLocalAll();
+        }
+    }
+
+    private void onMessage(String message) {
+        String[] parts = StringUtils.splitPreserveAllTokens(message, SEPARATOR, 4);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (null == cache) {
+            return;
+        }
+        if (TYPE_KEY.equals(parts[2]) && parts.length == 4) {
+            cache.invalidateLocal(parts[3]);
+        } else {
+            cache.invalidateLocalAll();
+        }
+    }
+
+    private class Subscriber extends JedisPubSub {
+
+        @Override
+        public void onMessage(String channel, String message) {
+            RedisCacheChannel.this.onMessage(message);
+        }
+
+        @Override
+        public void onPMessage(String pattern, String channel, String message) {
+        }
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onUnsubscribe(String channel, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPUnsubscribe(String pattern, int subscribedChannels) {
+        }
+
+        @Override
+        public void onPSubscribe(String pattern, int subscribedChannels) {
+        }
+    }
+
+}
@@ -0,0 +1,343 @@
+package com.fengjx.commons.plugin.cache.redis;
+
+import com.fengjx.commons.plugin.cache.Cache;
+import com.fengjx.commons.plugin.cache.IDataLoader;
+import com.fengjx.commons.plugin.cache.SingleFlight;
+import com.fengjx.commons.utils.LogUtil;
+import com.fengjx.commons.utils.ObjectUtils;
+import com.google.common.cache.CacheBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级缓存：本地缓存（L1）+ redis（L2）
+ * <p>
+ * 1. 读取依次查L1、L2、数据加载器，加载结果写入L2和L1，本节点内相同key只加载一次；<br>
+ * 2. 添加、删除同时修改L2并广播失效消息，其他节点删除对应的L1，下次读取从L2获取；
+ * 添加时值没有变化（如各节点启动预热）不广播，L2中没有旧值（已过期或被淘汰）时其他节点L1仍可能有旧值，需要广播；<br>
+ * 3. 删除时递增L2中的删除版本号，加载期间版本号有变化（数据已修改）的加载结果不写入L2、L1，
+ * 避免旧数据覆盖删除；<br>
+ * 4. L1有条数上限和较短的过期时间，失效消息丢失时最多读到localSeconds秒的旧数据；<br>
+ * 5. redis不可用时只使用L1，不影响业务。
+ * <p>
+ * 缓存的值需要可序列化。
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class TwoLevelCache implements Cache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private static final int SCAN_COUNT = 500;
+
+    // 删除版本号保留时间（秒），加载时间超过该值时加载结果不写入缓存
+    private static final int VERSION_SECONDS = 60;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    // 写入并返回旧值，KEYS：缓存key，ARGV：值、缓存时间
+    private static final byte[] ADD_SCRIPT = ("local old = redis.call('get', KEYS[1]) "
+            + "if tonumber(ARGV[2]) > 0 then redis.call('setex', KEYS[1], ARGV[2], ARGV[1]) "
+            + "else redis.call('set', KEYS[1], ARGV[1]) end "
+            + "return old").getBytes(StandardCharsets.UTF_8);
+
+    // 写入加载结果：已有值时返回已有值，删除版本号有变化时返回0，写入后返回1
+    // KEYS：缓存key、key删除版本号、缓存删除版本号，ARGV：值、缓存时间、加载前的两个版本号
+    private static final byte[] FILL_SCRIPT = ("local cur = redis.call('get', KEYS[1]) "
+            + "if cur then return cur end "
+            + "if (redis.call('get', KEYS[2]) or '') ~= ARGV[3] "
+            + "or (redis.call('get', KEYS[3]) or '') ~= ARGV[4] then return 0 end "
+            + "if tonumber(ARGV[2]) > 0 then redis.call('setex', KEYS[1], ARGV[2], ARGV[1]) "
+            + "else redis.call('set', KEYS[1], ARGV[1]) end "
+            + "return 1").getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+
+    private final RedisCacheChannel channel;
+
+    private final com.google.common.cache.Cache<String, Object> local;
+
+    private final SingleFlight flight = new SingleFlight();
+
+    // redis中缓存时间（秒），0表示不过期
+    private final int redisSeconds;
+
+    // 空结果在redis中的缓存时间（秒）
+    private final int nullSeconds;
+
+    /**
+     * @param name 缓存名称
+     * @param channel redis连接和失效广播
+     * @param localMaxSize 本地最多缓存条数
+     * @param localSeconds 本地缓存时间（秒）
+     * @param redisSeconds redis缓存时间（秒），0表示不过期
+     * @param nullSeconds 空结果缓存时间（秒）
+     */
+    public TwoLevelCache(String name, RedisCacheChannel channel, long localMaxSize,
+            int localSeconds, int redisSeconds, int nullSeconds) {
+        this.name = name;
+        this.channel = channel;
+        this.local = CacheBuilder.newBuilder().maximumSize(localMaxSize)
+                .expireAfterWrite(localSeconds, TimeUnit.SECONDS).build();
+        this.redisSeconds = redisSeconds;
+        this.nullSeconds = nullSeconds;
+        channel.register(this);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean add(String key, Object value) {
+        return add(key, value, redisSeconds);
+    }
+
+    @Override
+    public boolean add(String key, Object value, int seconds) {
+        Object wrapped = SingleFlight.wrap(value);
+        local.put(key, wrapped);
+        byte[] bytes = ObjectUtils.serialize(wrapped);
+        if (null == bytes) {
+            LogUtil.warn(LOG, "缓存数据不能序列化，只缓存在本地：" + name + ":" + key);
+            channel.publish(name, key);
+            return false;
+        }
+        try (Jedis jedis = channel.getResource()) {
+            byte[] old = (byte[]) jedis.eval(ADD_SCRIPT,
+                    Collections.singletonList(channel.key(name, key)),
+                    Arrays.asList(bytes, String.valueOf(seconds).getBytes(StandardCharsets.UTF_8)));
+            // L2中的旧值过期或被淘汰后，其他节点的L1仍可能缓存着旧值，只有值没变时才不广播
+            if (!Arrays.equals(old, bytes)) {
+                channel.publish(name, key);
+            }
+            return true;
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "写入redis缓存失败：" + name + ":" + key, e);
+            channel.publish(name, key);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean update(String key, Object value) {
+        return add(key, value);
+    }
+
+    @Override
+    public boolean update(String key, Object value, int seconds) {
+        return add(key, value, seconds);
+    }
+
+    @Override
+    public boolean remove(String key) {
+        local.invalidate(key);
+        boolean res = true;
+        try (Jedis jedis = channel.getResource()) {
+            byte[] versionKey = channel.versionKey(name, key);
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.incr(versionKey);
+            pipeline.expire(versionKey, VERSION_SECONDS);
+            pipeline.del(channel.key(name, key));
+            pipeline.sync();
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "删除redis缓存失败：" + name + ":" + key, e);
+            res = false;
+        }
+        channel.publish(name, key);
+        return res;
+    }
+
+    @Override
+    public boolean removeAll() {
+        local.invalidateAll();
+        boolean res = true;
+        try (Jedis jedis = channel.getResource()) {
+            byte[] versionKey = channel.versionKey(name, null);
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.incr(versionKey);
+            pipeline.expire(versionKey, VERSION_SECONDS);
+            pipeline.sync();
+            ScanParams params = new ScanParams().match(channel.pattern(name)).count(SCAN_COUNT);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> scan = jedis.scan(cursor, params);
+                List<String> keys = scan.getResult();
+                if (!keys.isEmpty()) {
+                    jedis.del(keys.toArray(new String[keys.size()]));
+                }
+                cursor = scan.getStringCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "清空redis缓存失败：" + name, e);
+            res = false;
+        }
+        channel.publish(name, null);
+        return res;
+    }
+
+    @Override
+    public <T> T get(String key) {
+        Object value = local.getIfPresent(key);
+        if (null == value) {
+            value = readRedis(key);
+            if (null != value) {
+                local.put(key, value);
+            }
+        }
+        return SingleFlight.unwrap(value);
+    }
+
+    @Override
+    public <T> T get(String key, IDataLoader<T> dataLoader) {
+        Object value = local.getIfPresent(key);
+        if (null != value) {
+            return SingleFlight.unwrap(value);
+        }
+        return SingleFlight.unwrap(flight.load(key, () -> {
+            Object loaded = local.getIfPresent(key);
+            if (null != loaded) {
+                return loaded;
+            }
+            byte[][] current = readWithVersions(key);
+            loaded = null == current ? null : ObjectUtils.unserialize(current[0]);
+            if (null == loaded) {
+                loaded = SingleFlight.wrap(dataLoader.load());
+                if (null != current) {
+                    Object filled = fillRedis(key, loaded, current);
+                    if (null == filled) {
+                        // 加载期间缓存被删除，结果可能是旧数据，只返回给本次调用
+                        return loaded;
+                    }
+                    loaded = filled;
+                }
+            }
+            local.put(key, loaded);
+            return loaded;
+        }));
+    }
+
+    @Override
+    public Map<String, Object> getMulti(String[] keyArr) {
+        Map<String, Object> res = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keyArr) {
+            Object value = local.getIfPresent(key);
+            if (null == value) {
+                missing.add(key);
+            } else if (!SingleFlight.isNull(value)) {
+                res.put(key, value);
+            }
+        }
+        if (missing.isEmpty()) {
+            return res;
+        }
+        byte[][] redisKeys = new byte[missing.size()][];
+        for (int i = 0; i < redisKeys.length; i++) {
+            redisKeys[i] = channel.key(name, missing.get(i));
+        }
+        try (Jedis jedis = channel.getResource()) {
+            List<byte[]> values = jedis.mget(redisKeys);
+            for (int i = 0; i < values.size(); i++) {
+                Object value = ObjectUtils.unserialize(values.get(i));
+                if (null != value) {
+                    local.put(missing.get(i), value);
+                    if (!SingleFlight.isNull(value)) {
+                        res.put(missing.get(i), value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "批量读取redis缓存失败：" + name, e);
+        }
+        return res;
+    }
+
+    /**
+     * 删除本节点的L1缓存，收到失效消息时调用
+     */
+    void invalidateLocal(String key) {
+        local.invalidate(key);
+    }
+
+    void invalidateLocalAll() {
+        local.invalidateAll();
+    }
+
+    public long localSize() {
+        return local.size();
+    }
+
+    private Object readRedis(String key) {
+        try (Jedis jedis = channel.getResource()) {
+            return ObjectUtils.unserialize(jedis.get(channel.key(name, key)));
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "读取redis缓存失败：" + name + ":" + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 读取L2中的值和删除版本号
+     *
+     * @return [值, key删除版本号, 缓存删除版本号]，redis不可用时返回null
+     */
+    private byte[][] readWithVersions(String key) {
+        try (Jedis jedis = channel.getResource()) {
+            List<byte[]> values = jedis.mget(channel.key(name, key),
+                    channel.versionKey(name, key), channel.versionKey(name, null));
+            return values.toArray(new byte[values.size()][]);
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "读取redis缓存失败：" + name + ":" + key, e);
+            return null;
+        }
+    }
+
+    /**
+     * 加载结果写入L2，删除版本号与加载前不一致时不写入
+     *
+     * @param current 加载前读取的值和删除版本号
+     * @return 需要缓存到L1的值：L2中已有的值或加载结果，版本号不一致时返回null
+     */
+    private Object fillRedis(String key, Object loaded, byte[][] current) {
+        byte[] bytes = ObjectUtils.serialize(loaded);
+        if (null == bytes) {
+            LogUtil.warn(LOG, "缓存数据不能序列化，只缓存在本地：" + name + ":" + key);
+            return loaded;
+        }
+        int seconds = SingleFlight.isNull(loaded) ? nullSeconds : redisSeconds;
+        try (Jedis jedis = channel.getResource()) {
+            Object res = jedis.eval(FILL_SCRIPT,
+                    Arrays.asList(channel.key(name, key), channel.versionKey(name, key),
+                            channel.versionKey(name, null)),
+                    Arrays.asList(bytes, String.valueOf(seconds).getBytes(StandardCharsets.UTF_8),
+                            null == current[1] ? EMPTY : current[1],
+                            null == current[2] ? EMPTY : current[2]));
+            if (res instanceof byte[]) {
+                Object value = ObjectUtils.unserialize((byte[]) res);
+                return null == value ? loaded : value;
+            }
+            return Long.valueOf(0).equals(res) ? null : loaded;
+        } catch (Exception e) {
+            LogUtil.warn(LOG, "写入redis缓存失败：" + name + ":" + key, e);
+            return loaded;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.fengjx.commons.plugin.cache.redis;
+
+import com.fengjx.commons.plugin.IPlugin;
+import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
+import com.fengjx.commons.utils.LogUtil;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import redis.clients.jedis.JedisPool;
+
+/**
+ * 两级缓存插件
+ * <p>
+ * 开启后cacheNames中的缓存改为{@link TwoLevelCache}，EhCacheUtil对这些缓存的读写、删除都经过redis并广播到其他节点，
+ * 业务代码不需要修改。集群部署时开启，单机部署保持关闭。需在ehCachePlugin之后启动。
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class TwoLevelCachePlugin implements IPlugin {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TwoLevelCachePlugin.class);
+
+    private JedisPool jedisPool;
+
+    private boolean enabled;
+
+    private String keyPrefix;
+
+    private String[] cacheNames;
+
+    // 本地缓存最多条数（每个缓存）
+    private long localMaxSize = 1000;
+
+    // 本地缓存时间（秒）
+    private int localSeconds = 60;
+
+    // redis缓存时间（秒），0表示不过期
+    private int redisSeconds = 86400;
+
+    // 空结果缓存时间（秒）
+    private int nullSeconds = 60;
+
+    private RedisCacheChannel channel;
+
+    @Override
+    public void start() {
+        if (!enabled || null == cacheNames || cacheNames.length == 0) {
+            return;
+        }
+        channel = new RedisCacheChannel(jedisPool, keyPrefix);
+        for (String name : cacheNames) {
+            if (StringUtils.isBlank(name)) {
+                continue;
+            }
+            TwoLevelCache cache = new TwoLevelCache(name.trim(), channel, localMaxSize,
+                    localSeconds, redisSeconds, nullSeconds);
+            EhCacheUtil.distribute(cache.getName(), cache);
+        }
+        channel.start();
+        LogUtil.info(LOG, "两级缓存：" + StringUtils.join(cacheNames, ","));
+    }
+
+    public void stop() {
+        if (null != channel) {
+            channel.stop();
+        }
+    }
+
+    public void setJedisPool(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void setKeyPrefix(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public void setCacheNames(String[] cacheNames) {
+        this.cacheNames = cacheNames;
+    }
+
+    public void setLocalMaxSize(long localMaxSize) {
+        this.localMaxSize = localMaxSize;
+    }
+
+    public void setLocalSeconds(int localSeconds) {
+        this.localSeconds = localSeconds;
+    }
+
+    public void setRedisSeconds(int redisSeconds) {
+        this.redisSeconds = redisSeconds;
+    }
+
+    public void setNullSeconds(int nullSeconds) {
+        this.nullSeconds = nullSeconds;
+    }
+}
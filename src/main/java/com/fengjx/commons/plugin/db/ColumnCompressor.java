@@ -0,0 +1,77 @@
+package com.fengjx.commons.plugin.db;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩字段编解码，见{@link com.fengjx.commons.plugin.db.annotation.Mapper#compress()}
+ * <p>
+ * 字段在数据库中为blob，写入时不少于256个字符的文本gzip压缩，较短或压缩后没有变小的按UTF-8原文存储；
+ * 读取时按gzip头判断，因此由text改为blob的历史数据不需要迁移。
+ *
+ * @author fengjx.
+ * @date：2016/3/23
+ */
+public final class ColumnCompressor {
+
+    // 小于该长度（字符）不压缩
+    private static final int MIN_LENGTH = 256;
+
+    private ColumnCompressor() {
+    }
+
+    public static byte[] compress(String text) {
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (text.length() < MIN_LENGTH) {
+            return raw;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(raw);
+        } catch (IOException e) {
+            throw new MyDbException(e);
+        }
+        return out.size() < raw.length ? out.toByteArray() : raw;
+    }
+
+    public static String decompress(byte[] data) {
+        if (!isCompressed(data)) {
+            return new String(data, StandardCharsets.UTF_8);
+        }
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return new String(IOUtils.toByteArray(gzip), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new MyDbException("解压字段失败", e);
+        }
+    }
+
+    private static boolean isCompressed(byte[] data) {
+        return data.length > 2 && data[0] == (byte) 0x1f && data[1] == (byte) 0x8b;
+    }
+
+    /**
+     * 未解压的字段值，第一次读取时解压，见{@link IndexedColumns}
+     */
+    static final class Lazy implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] data;
+
+        Lazy(byte[] data) {
+            this.data = data;
+        }
+
+        String get() {
+            return decompress(data);
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.fengjx.commons.plugin.db;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 不可变的列名 -> 下标索引
+ * <p>
+ * 同一张表（或同一次查询）的所有{@link IndexedColumns}共用一个实例，每行只保存值数组。
+ *
+ * @author fengjx.
+ * @date：2016/3/19
+ */
+public final class ColumnIndex implements Serializable {
+
+    private static final long serialVersionUID = -2717024453787339541L;
+
+    private final String[] names;
+
+    private final Map<String, Integer> positions;
+
+    private ColumnIndex(String[] names, Map<String, Integer> positions) {
+        this.names = names;
+        this.positions = positions;
+    }
+
+    /**
+     * @param names 列名，按查询结果顺序
+     * @return 列名重复时返回null（重复列无法用下标表示）
+     */
+    public static ColumnIndex of(String... names) {
+        ImmutableMap.Builder<String, Integer> builder = ImmutableMap.builder();
+        for (int i = 0; i < names.length; i++) {
+            builder.put(names[i], i);
+        }
+        try {
+            return new ColumnIndex(names.clone(), builder.build());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public int indexOf(Object name) {
+        Integer i = positions.get(name);
+        return null == i ? -1 : i;
+    }
+
+    public String nameAt(int i) {
+        return names[i];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 列名及顺序是否一致
+     */
+    public boolean sameColumns(String[] other) {
+        return Arrays.equals(names, other);
+    }
+
+}
@@ -4,8 +4,14 @@ package com.fengjx.commons.plugin.db;
 import com.fengjx.commons.plugin.db.dialect.Dialect;
 import com.google.common.collect.Maps;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 数据库配置
@@ -27,8 +33,23 @@ public class Config {
 
     private Map<Class<? extends BaseBean>, Table> beanToTableMap = Maps.newHashMap();
 
+    // 主库
     private JdbcTemplate jdbcTemplate;
 
+    // 从库，为空时读写都走主库
+    private List<JdbcTemplate> readJdbcTemplates = Collections.emptyList();
+
+    private final AtomicInteger readIndex = new AtomicInteger();
+
+    // 分页总数统计策略
+    private CountStrategy countStrategy = new CountStrategy();
+
+    // 批量新增、更新每批条数
+    private int batchSize = 500;
+
+    // 批量新增时是否合并为insert ... values (...), (...)（需方言支持）
+    private boolean multiRowInsert;
+
     public Config(Dialect dialect, JdbcTemplate jdbcTemplate) {
         this.dialect = dialect;
         this.jdbcTemplate = jdbcTemplate;
@@ -66,6 +87,30 @@ public class Config {
         this.autoId = autoId;
     }
 
+    public CountStrategy getCountStrategy() {
+        return countStrategy;
+    }
+
+    public void setCountStrategy(CountStrategy countStrategy) {
+        this.countStrategy = countStrategy;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
     public void putTable(Table table) {
         beanToTableMap.put(table.getModelClass(), table);
     }
@@ -87,4 +132,68 @@ public class Config {
     public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
+
+    public List<JdbcTemplate> getReadJdbcTemplates() {
+        return readJdbcTemplates;
+    }
+
+    public void setReadJdbcTemplates(List<JdbcTemplate> readJdbcTemplates) {
+        this.readJdbcTemplates = null == readJdbcTemplates ? Collections.emptyList()
+                : readJdbcTemplates;
+    }
+
+    /**
+     * 写操作使用的JdbcTemplate（主库）
+     * <p>
+     * 在事务中调用时标记该事务已写入，之后事务内的查询都走主库。默认事务声明中未按写方法命名的方法
+     * （如reset）是只读事务，写入后的查询也不会读到从库的旧数据。
+     *
+     * @return
+     */
+    public JdbcTemplate getWriteJdbcTemplate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !isWritten()) {
+            TransactionSynchronizationManager.registerSynchronization(new WrittenMarker());
+        }
+        return jdbcTemplate;
+    }
+
+    /**
+     * 查询使用的JdbcTemplate
+     * <p>
+     * 没有从库、指定了{@link ReadRoute#primary}、处于读写事务中或当前事务已写入时返回主库，否则轮询从库。
+     *
+     * @return
+     */
+    public JdbcTemplate getReadJdbcTemplate() {
+        List<JdbcTemplate> replicas = readJdbcTemplates;
+        if (replicas.isEmpty() || ReadRoute.isPrimary()
+                || (TransactionSynchronizationManager.isActualTransactionActive()
+                        && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())
+                || (TransactionSynchronizationManager.isSynchronizationActive() && isWritten())) {
+            return jdbcTemplate;
+        }
+        if (replicas.size() == 1) {
+            return replicas.get(0);
+        }
+        return replicas.get((readIndex.getAndIncrement() & Integer.MAX_VALUE) % replicas.size());
+    }
+
+    /**
+     * 当前事务是否已写入（事务挂起时标记随同步一起挂起，REQUIRES_NEW的新事务不受外层影响）
+     */
+    private static boolean isWritten() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager
+                .getSynchronizations()) {
+            if (synchronization instanceof WrittenMarker) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 事务已写入标记，事务结束时随同步一起清除
+     */
+    private static class WrittenMarker extends TransactionSynchronizationAdapter {
+    }
 }
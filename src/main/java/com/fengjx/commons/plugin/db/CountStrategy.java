@@ -0,0 +1,157 @@
+package com.fengjx.commons.plugin.db;
+
+import com.fengjx.commons.utils.LogUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 分页总记录数统计策略
+ * <p>
+ * 1. 相同sql+参数的count结果缓存cacheSeconds秒，翻页时不再重复count；<br>
+ * 2. 不带条件的单表查询，表的估算行数（information_schema）超过estimateThreshold时直接使用估算值，
+ * 结果标记为近似值{@link Page#isApproximate()}。estimateThreshold为0时不估算。
+ * <p>
+ * 缓存期间的新增、删除不会反映到总数上，cacheSeconds不宜设置过长。
+ *
+ * @author fengjx.
+ * @date：2016/3/20
+ */
+public class CountStrategy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CountStrategy.class);
+
+    // select ... from table [alias]，不带where、join、group by
+    private static final Pattern SINGLE_TABLE_PATTERN = Pattern.compile(
+            "^\\s*select\\s+.+?\\s+from\\s+`?(\\w+)`?(\\s+(as\\s+)?\\w+)?\\s*$",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern WHITESPACE_PATTERN = Pattern.compile("\\s+");
+
+    private final long estimateThreshold;
+
+    private final Cache<String, Count> counts;
+
+    /**
+     * 不缓存、不估算，与原来的count行为一致
+     */
+    public CountStrategy() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * @param cacheSeconds count结果缓存时间，0表示不缓存
+     * @param cacheSize 最多缓存的sql条数
+     * @param estimateThreshold 使用估算行数的最小表行数，0表示不估算
+     */
+    public CountStrategy(long cacheSeconds, long cacheSize, long estimateThreshold) {
+        this.estimateThreshold = estimateThreshold;
+        this.counts = cacheSeconds > 0 ? CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS).maximumSize(cacheSize).build()
+                : null;
+    }
+
+    /**
+     * 统计分页查询的总记录数
+     *
+     * @param config 数据库配置
+     * @param sql 分页查询sql
+     * @param paras 查询参数
+     * @return
+     */
+    public Count count(Config config, String sql, Object... paras) {
+        if (null == counts) {
+            return load(config, sql, paras);
+        }
+        String key = cacheKey(sql, paras);
+        Count count = counts.getIfPresent(key);
+        if (null == count) {
+            count = load(config, sql, paras);
+            counts.put(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * 清空count缓存
+     */
+    public void invalidateAll() {
+        if (null != counts) {
+            counts.invalidateAll();
+        }
+    }
+
+    private Count load(Config config, String sql, Object... paras) {
+        if (estimateThreshold > 0 && (null == paras || paras.length == 0)) {
+            Long estimate = estimate(config, sql);
+            if (null != estimate && estimate >= estimateThreshold) {
+                return new Count((int) Math.min(estimate, Integer.MAX_VALUE), true);
+            }
+        }
+        StringBuilder countSql = new StringBuilder();
+        config.getDialect().forCount(countSql, sql);
+        Integer total = config.getReadJdbcTemplate().queryForObject(countSql.toString(), paras,
+                Integer.class);
+        return new Count(null == total ? 0 : total, false);
+    }
+
+    /**
+     * @return 不是单表无条件查询或数据库不支持时返回null
+     */
+    private Long estimate(Config config, String sql) {
+        Matcher matcher = SINGLE_TABLE_PATTERN.matcher(config.getDialect().replaceOrderBy(sql));
+        if (!matcher.matches()) {
+            return null;
+        }
+        String estimateSql = config.getDialect().forTableRowEstimate();
+        if (null == estimateSql) {
+            return null;
+        }
+        try {
+            return config.getReadJdbcTemplate().queryForObject(estimateSql, Long.class,
+                    matcher.group(1));
+        } catch (DataAccessException e) {
+            LogUtil.warn(LOG, "查询表估算行数失败，使用count统计", e);
+            return null;
+        }
+    }
+
+    private static String cacheKey(String sql, Object... paras) {
+        String normalized = WHITESPACE_PATTERN.matcher(sql.trim()).replaceAll(" ");
+        return null == paras || paras.length == 0 ? normalized
+                : normalized + '|' + Arrays.deepToString(paras);
+    }
+
+    /**
+     * 统计结果
+     */
+    public static class Count {
+
+        private final int totalRow;
+
+        // 是否是估算值
+        private final boolean approximate;
+
+        public Count(int totalRow, boolean approximate) {
+            this.totalRow = totalRow;
+            this.approximate = approximate;
+        }
+
+        public int getTotalRow() {
+            return totalRow;
+        }
+
+        public boolean isApproximate() {
+            return approximate;
+        }
+    }
+
+}
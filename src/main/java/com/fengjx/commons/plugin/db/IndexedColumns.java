@@ -0,0 +1,331 @@
+package com.fengjx.commons.plugin.db;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * 基于共享列索引的Record字段存储
+ * <p>
+ * 值保存在Object[]中，BitSet标记哪些列有值、哪些列被修改；不在索引中的列（如关联查询的别名）
+ * 放到溢出的LinkedHashMap。{@link Record#_getColumns()}的调用方不需要改动。
+ * <p>
+ * 遍历顺序不是插入顺序：先按查询结果的列顺序遍历索引中的列（删除后重新赋值的列仍在原位置），
+ * 再按赋值顺序遍历溢出的列。
+ *
+ * @author fengjx.
+ * @date：2016/3/19
+ */
+public class IndexedColumns extends AbstractMap<String, Object> implements Serializable {
+
+    private static final long serialVersionUID = 6474419939002574564L;
+
+    private final ColumnIndex index;
+
+    private final Object[] values;
+
+    // 有值的列
+    private final BitSet present;
+
+    // 有修改的列
+    private final BitSet dirty;
+
+    private Map<String, Object> overflow;
+
+    private Set<String> overflowDirty;
+
+    private transient Set<Entry<String, Object>> entrySet;
+
+    private transient Set<String> modifyFlag;
+
+    public IndexedColumns(ColumnIndex index) {
+        this.index = index;
+        this.values = new Object[index.size()];
+        this.present = new BitSet(index.size());
+        this.dirty = new BitSet(index.size());
+    }
+
+    /**
+     * 按下标赋值，用于从ResultSet构建，不标记修改
+     */
+    void putAt(int i, Object value) {
+        values[i] = value;
+        present.set(i);
+    }
+
+    @Override
+    public int size() {
+        return present.cardinality() + (null == overflow ? 0 : overflow.size());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int i = index.indexOf(key);
+        if (i >= 0) {
+            return present.get(i);
+        }
+        return null != overflow && overflow.containsKey(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        int i = index.indexOf(key);
+        if (i >= 0) {
+            return valueAt(i);
+        }
+        return null == overflow ? null : overflow.get(key);
+    }
+
+    /**
+     * 压缩字段在第一次读取时解压
+     */
+    private Object valueAt(int i) {
+        Object value = values[i];
+        if (value instanceof ColumnCompressor.Lazy) {
+            value = ((ColumnCompressor.Lazy) value).get();
+            values[i] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        int i = index.indexOf(key);
+        if (i >= 0) {
+            Object old = valueAt(i);
+            putAt(i, value);
+            return old;
+        }
+        if (null == overflow) {
+            overflow = new LinkedHashMap<>();
+        }
+        return overflow.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        int i = index.indexOf(key);
+        if (i >= 0) {
+            return removeAt(i);
+        }
+        return null == overflow ? null : overflow.remove(key);
+    }
+
+    private Object removeAt(int i) {
+        Object old = valueAt(i);
+        values[i] = null;
+        present.clear(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(values, null);
+        present.clear();
+        if (null != overflow) {
+            overflow.clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (null == entrySet) {
+            entrySet = new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return IndexedColumns.this.size();
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * 修改标记，与Record原来的modifyFlag语义一致
+     */
+    Set<String> modifyFlag() {
+        if (null == modifyFlag) {
+            modifyFlag = new ModifyFlag();
+        }
+        return modifyFlag;
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+        private int next = present.nextSetBit(0);
+
+        private int last = -1;
+
+        private Iterator<Entry<String, Object>> overflowIt;
+
+        @Override
+        public boolean hasNext() {
+            if (next >= 0) {
+                return true;
+            }
+            if (null == overflowIt && null != overflow) {
+                overflowIt = overflow.entrySet().iterator();
+            }
+            return null != overflowIt && overflowIt.hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next >= 0) {
+                last = next;
+                next = present.nextSetBit(next + 1);
+                return new IndexedEntry(last);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = -1;
+            return overflowIt.next();
+        }
+
+        @Override
+        public void remove() {
+            if (last >= 0) {
+                removeAt(last);
+                last = -1;
+            } else if (null != overflowIt) {
+                overflowIt.remove();
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class IndexedEntry extends SimpleEntry<String, Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int i;
+
+        IndexedEntry(int i) {
+            super(index.nameAt(i), valueAt(i));
+            this.i = i;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            values[i] = value;
+            return super.setValue(value);
+        }
+    }
+
+    private class ModifyFlag extends AbstractSet<String> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean add(String column) {
+            int i = index.indexOf(column);
+            if (i >= 0) {
+                boolean added = !dirty.get(i);
+                dirty.set(i);
+                return added;
+            }
+            if (null == overflowDirty) {
+                overflowDirty = new HashSet<>();
+            }
+            return overflowDirty.add(column);
+        }
+
+        @Override
+        public boolean contains(Object column) {
+            int i = index.indexOf(column);
+            if (i >= 0) {
+                return dirty.get(i);
+            }
+            return null != overflowDirty && overflowDirty.contains(column);
+        }
+
+        @Override
+        public boolean remove(Object column) {
+            int i = index.indexOf(column);
+            if (i >= 0) {
+                boolean removed = dirty.get(i);
+                dirty.clear(i);
+                return removed;
+            }
+            return null != overflowDirty && overflowDirty.remove(column);
+        }
+
+        @Override
+        public void clear() {
+            dirty.clear();
+            if (null != overflowDirty) {
+                overflowDirty.clear();
+            }
+        }
+
+        @Override
+        public int size() {
+            return dirty.cardinality() + (null == overflowDirty ? 0 : overflowDirty.size());
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+
+                private int next = dirty.nextSetBit(0);
+
+                private int last = -1;
+
+                private Iterator<String> overflowIt;
+
+                @Override
+                public boolean hasNext() {
+                    if (next >= 0) {
+                        return true;
+                    }
+                    if (null == overflowIt && null != overflowDirty) {
+                        overflowIt = overflowDirty.iterator();
+                    }
+                    return null != overflowIt && overflowIt.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    if (next >= 0) {
+                        last = next;
+                        next = dirty.nextSetBit(next + 1);
+                        return index.nameAt(last);
+                    }
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    last = -1;
+                    return overflowIt.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (last >= 0) {
+                        dirty.clear(last);
+                        last = -1;
+                    } else if (null != overflowIt) {
+                        overflowIt.remove();
+                    } else {
+                        throw new IllegalStateException();
+                    }
+                }
+            };
+        }
+    }
+
+}
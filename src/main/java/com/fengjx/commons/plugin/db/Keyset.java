@@ -0,0 +1,173 @@
+package com.fengjx.commons.plugin.db;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * 游标分页（keyset）条件
+ * <p>
+ * 按排序字段记住上一页最后一条记录的值，下一页用"where (排序字段) 小于/大于 上次的值"代替limit offset，
+ * 深翻页不需要扫描并丢弃前面的记录。排序字段组合必须唯一且不能为null，如：in_time, id。
+ *
+ * <pre>
+ * Keyset keyset = Keyset.desc("l.in_time", "l.id").after(cursor);
+ * KeysetPage&lt;Record&gt; page = keysetPage(Record.class, keyset, 20, false, sql, params);
+ * page.getNextCursor(); // 下一页游标，最后一页为null
+ * </pre>
+ *
+ * @author fengjx.
+ * @date：2016/3/20
+ */
+public class Keyset implements Serializable {
+
+    private static final long serialVersionUID = -1592468306522213764L;
+
+    // 游标中各字段值的分隔符
+    private static final char SEPARATOR = '\u0001';
+
+    // 排序字段，可以带表别名
+    private final String[] columns;
+
+    // 结果集中的字段名（去掉表别名）
+    private final String[] labels;
+
+    private final boolean desc;
+
+    // 上一页最后一条记录的排序字段值，null表示第一页
+    private Object[] after;
+
+    private Keyset(boolean desc, String... columns) {
+        if (null == columns || columns.length == 0) {
+            throw new MyDbException("keyset columns can not be empty");
+        }
+        this.desc = desc;
+        this.columns = columns.clone();
+        this.labels = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            labels[i] = StringUtils.substringAfterLast(columns[i], ".");
+            if (labels[i].isEmpty()) {
+                labels[i] = columns[i];
+            }
+        }
+    }
+
+    public static Keyset asc(String... columns) {
+        return new Keyset(false, columns);
+    }
+
+    public static Keyset desc(String... columns) {
+        return new Keyset(true, columns);
+    }
+
+    /**
+     * 从上一页返回的游标继续查询
+     *
+     * @param cursor 为空表示查询第一页
+     */
+    public Keyset after(String cursor) {
+        this.after = StringUtils.isBlank(cursor) ? null : decode(cursor);
+        return this;
+    }
+
+    /**
+     * 从指定的排序字段值继续查询
+     */
+    public Keyset after(Object... values) {
+        if (null != values && values.length != columns.length) {
+            throw new MyDbException("keyset values size must be " + columns.length);
+        }
+        this.after = values;
+        return this;
+    }
+
+    public String[] getColumns() {
+        return columns;
+    }
+
+    public boolean isDesc() {
+        return desc;
+    }
+
+    public Object[] getAfter() {
+        return after;
+    }
+
+    public boolean isFirstPage() {
+        return null == after;
+    }
+
+    /**
+     * 生成指向该记录之后的游标
+     */
+    public String cursorOf(Record row) {
+        return cursorOf(row._getColumns());
+    }
+
+    public String cursorOf(Map<String, Object> row) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i++) {
+            if (i > 0) {
+                sb.append(SEPARATOR);
+            }
+            Object value = row.get(labels[i]);
+            if (null == value) {
+                throw new MyDbException("keyset column " + labels[i] + " can not be null");
+            }
+            if (value instanceof java.util.Date) {
+                sb.append('t').append(((java.util.Date) value).getTime());
+            } else if (value instanceof Long || value instanceof Integer
+                    || value instanceof Short) {
+                sb.append('l').append(value);
+            } else if (value instanceof Number) {
+                sb.append('n').append(value);
+            } else {
+                sb.append('s').append(value);
+            }
+        }
+        return Base64.encodeBase64URLSafeString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Object[] decode(String cursor) {
+        String[] parts = StringUtils.splitPreserveAllTokens(
+                new String(Base64.decodeBase64(cursor), StandardCharsets.UTF_8), SEPARATOR);
+        if (parts.length != columns.length) {
+            throw new MyDbException("分页游标格式错误");
+        }
+        Object[] values = new Object[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                String part = parts[i];
+                if (part.isEmpty()) {
+                    throw new MyDbException("分页游标格式错误");
+                }
+                String text = part.substring(1);
+                switch (part.charAt(0)) {
+                    case 't':
+                        values[i] = new Timestamp(Long.parseLong(text));
+                        break;
+                    case 'l':
+                        values[i] = Long.valueOf(text);
+                        break;
+                    case 'n':
+                        values[i] = new BigDecimal(text);
+                        break;
+                    case 's':
+                        values[i] = text;
+                        break;
+                    default:
+                        throw new MyDbException("分页游标格式错误");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new MyDbException("分页游标格式错误", e);
+        }
+        return values;
+    }
+
+}
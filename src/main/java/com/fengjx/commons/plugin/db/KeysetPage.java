@@ -0,0 +1,48 @@
+package com.fengjx.commons.plugin.db;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 游标分页结果，见{@link Keyset}
+ *
+ * @author fengjx.
+ * @date：2016/3/20
+ */
+public class KeysetPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 3460750624386581011L;
+
+    private List<T> list;                  // list result of this page
+    private int pageSize;                  // result amount of this page
+    private String nextCursor;             // 下一页游标，最后一页为null
+    private int totalRow;                  // 总记录数，未统计时为-1
+
+    public KeysetPage(List<T> list, int pageSize, String nextCursor, int totalRow) {
+        this.list = list;
+        this.pageSize = pageSize;
+        this.nextCursor = nextCursor;
+        this.totalRow = totalRow;
+    }
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public int getTotalRow() {
+        return totalRow;
+    }
+
+    public boolean isLastPage() {
+        return null == nextCursor;
+    }
+
+}
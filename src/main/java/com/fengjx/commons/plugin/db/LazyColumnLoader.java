@@ -0,0 +1,137 @@
+package com.fengjx.commons.plugin.db;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延迟加载字段的按需查询，见{@link com.fengjx.commons.plugin.db.annotation.Mapper#lazy()}
+ * <p>
+ * 单条记录在{@link Record#get(String)}时加载该行所有延迟字段；列表可用
+ * {@link Model#loadLazyColumns(List)}按主键in批量加载，避免逐行查询。
+ *
+ * @author fengjx.
+ * @date：2016/3/23
+ */
+final class LazyColumnLoader {
+
+    private LazyColumnLoader() {
+    }
+
+    /**
+     * 加载单条记录的延迟字段
+     */
+    static void load(Record record, Table table) {
+        String[] pKeys = table.getPrimaryKey();
+        Object[] ids = new Object[pKeys.length];
+        for (int i = 0; i < pKeys.length; i++) {
+            ids[i] = record._getColumns().get(pKeys[i]);
+        }
+        Record loaded = null;
+        if (!Arrays.asList(ids).contains(null)) {
+            Config config = table.getConfig();
+            String sql = config.getDialect().forModelFindById(table,
+                    StringUtils.join(table.getLazyColumns(), ","));
+            List<Record> list = config.getReadJdbcTemplate().query(sql, rowMapper(table), ids);
+            loaded = list.isEmpty() ? null : list.get(0);
+        }
+        fill(record, table, loaded);
+    }
+
+    /**
+     * 批量加载延迟字段，只处理未加载过的记录；复合主键逐条加载
+     */
+    static void load(List<? extends Record> records, Table table) {
+        List<Record> pending = new ArrayList<>();
+        for (Record record : records) {
+            if (null != record && table.getModelClass() == record.getLazyClass()) {
+                pending.add(record);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        String[] pKeys = table.getPrimaryKey();
+        if (pKeys.length > 1) {
+            for (Record record : pending) {
+                load(record, table);
+            }
+            return;
+        }
+        Config config = table.getConfig();
+        int chunk = Math.max(1, config.getBatchSize());
+        for (int from = 0; from < pending.size(); from += chunk) {
+            List<Record> part = pending.subList(from, Math.min(from + chunk, pending.size()));
+            Map<Object, List<Record>> byId = new LinkedHashMap<>();
+            for (Record record : part) {
+                Object id = record._getColumns().get(pKeys[0]);
+                if (null == id) {
+                    fill(record, table, null);
+                    continue;
+                }
+                List<Record> same = byId.get(id);
+                if (null == same) {
+                    same = new ArrayList<>(1);
+                    byId.put(id, same);
+                }
+                same.add(record);
+            }
+            if (byId.isEmpty()) {
+                continue;
+            }
+            String sql = config.getDialect().forModelFindByIds(table, table.getLazyColumns(),
+                    byId.size());
+            Map<Object, Record> rows = new HashMap<>();
+            for (Record row : config.getReadJdbcTemplate().query(sql, rowMapper(table),
+                    byId.keySet().toArray())) {
+                rows.put(row._getColumns().get(pKeys[0]), row);
+            }
+            for (Map.Entry<Object, List<Record>> e : byId.entrySet()) {
+                for (Record record : e.getValue()) {
+                    fill(record, table, rows.get(e.getKey()));
+                }
+            }
+        }
+    }
+
+    /**
+     * 填充延迟字段，不标记修改；记录不存在时填充null
+     */
+    private static void fill(Record record, Table table, Record loaded) {
+        Map<String, Object> columns = record._getColumns();
+        for (String column : table.getLazyColumns()) {
+            if (!columns.containsKey(column)) {
+                columns.put(column, null == loaded ? null : loaded.get(column));
+            }
+        }
+        record.setLazyClass(null);
+    }
+
+    private static RowMapper<Record> rowMapper(final Table table) {
+        return new RowMapper<Record>() {
+
+            private RecordBuilder.ColumnMeta meta;
+
+            @Override
+            public Record mapRow(ResultSet rs, int rowNum) throws SQLException {
+                if (null == meta) {
+                    meta = RecordBuilder.ColumnMeta.of(rs, table.getModelClass());
+                }
+                try {
+                    return RecordBuilder.build(rs, Record.class, meta);
+                } catch (InstantiationException | IllegalAccessException e) {
+                    throw new MyDbException(e);
+                }
+            }
+        };
+    }
+
+}
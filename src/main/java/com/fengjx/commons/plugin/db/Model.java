@@ -1,27 +1,52 @@
 
 package com.fengjx.commons.plugin.db;
 
+import com.fengjx.commons.plugin.db.dialect.Dialect;
 import com.fengjx.commons.web.page.PageContext;
 import com.google.common.collect.Lists;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author fengjx. @date：2015/5/8 0008
  */
 public abstract class Model<B extends BaseBean> {
 
+    // 单条sql最多参数个数（mysql预编译语句限制）
+    private static final int MAX_PARAMS = 65535;
+
+    /**
+     * 同queryForList，压缩字段（{@link TableMapping#isCompressColumn}）解压为文本
+     */
+    private static final RowMapper<Map<String, Object>> COLUMN_MAP_ROW_MAPPER =
+            new ColumnMapRowMapper() {
+                @Override
+                protected Object getColumnValue(ResultSet rs, int index) throws SQLException {
+                    Object value = super.getColumnValue(rs, index);
+                    if (value instanceof byte[] && TableMapping.me().isCompressColumn(
+                            JdbcUtils.lookupColumnName(rs.getMetaData(), index))) {
+                        return ColumnCompressor.decompress((byte[]) value);
+                    }
+                    return value;
+                }
+            };
+
     private Class<B> beanClazz;
 
     public boolean save(B bean) {
@@ -47,7 +72,7 @@ public abstract class Model<B extends BaseBean> {
         StringBuilder sql = new StringBuilder();
         List<Object> params = new ArrayList<>();
         config.getDialect().forModelSave(table, attrs, sql, params);
-        return config.getJdbcTemplate().update(sql.toString(), params.toArray()) >= 1;
+        return config.getWriteJdbcTemplate().update(sql.toString(), params.toArray()) >= 1;
     }
 
     @Deprecated
@@ -60,6 +85,170 @@ public abstract class Model<B extends BaseBean> {
         return insert(getUsefulClass(), record);
     }
 
+    /**
+     * 批量新增，见{@link #insertBatch(List)}
+     *
+     * @param beans
+     * @return 新增条数
+     */
+    public int saveBatch(List<B> beans) {
+        if (CollectionUtils.isEmpty(beans)) {
+            return 0;
+        }
+        List<Map<String, Object>> rows = new ArrayList<>(beans.size());
+        for (B bean : beans) {
+            rows.add(bean._getColumns());
+        }
+        return insertBatch(rows);
+    }
+
+    /**
+     * 批量新增，按字段组合分组，每组使用一条预编译sql分批执行
+     *
+     * @param rows 新增数据
+     * @return 新增条数
+     */
+    public int insertBatch(List<? extends Map<String, Object>> rows) {
+        return insertBatch(getUsefulClass(), rows);
+    }
+
+    public int insertBatch(Class<? extends BaseBean> cls, List<? extends Map<String, Object>> rows) {
+        if (CollectionUtils.isEmpty(rows)) {
+            return 0;
+        }
+        Table table = getTable(cls);
+        Config config = table.getConfig();
+        Map<List<String>, List<Object[]>> groups = new LinkedHashMap<>();
+        for (Map<String, Object> attrs : rows) {
+            if (config.isAutoId()) {
+                for (String id : table.getPrimaryKey()) {
+                    if (StringUtils.isBlank((String) attrs.get(id))) {
+                        attrs.put(id, config.getIdGenerator().createId());
+                    }
+                }
+            }
+            List<String> columns = new ArrayList<>(attrs.size());
+            List<Object> values = new ArrayList<>(attrs.size());
+            for (Map.Entry<String, Object> e : attrs.entrySet()) {
+                if (table.hasColumnLabel(e.getKey())) {
+                    columns.add(e.getKey());
+                    values.add(table.toDbValue(e.getKey(), e.getValue()));
+                }
+            }
+            List<Object[]> group = groups.get(columns);
+            if (null == group) {
+                group = new ArrayList<>();
+                groups.put(columns, group);
+            }
+            group.add(values.toArray());
+        }
+        Dialect dialect = config.getDialect();
+        boolean multiRow = config.isMultiRowInsert() && dialect.isMultiRowInsert();
+        int total = 0;
+        for (Map.Entry<List<String>, List<Object[]>> group : groups.entrySet()) {
+            String[] columns = group.getKey().toArray(new String[group.getKey().size()]);
+            List<Object[]> args = group.getValue();
+            if (multiRow) {
+                // 单条sql的参数个数不能超过65535
+                int chunk = Math.max(1, Math.min(config.getBatchSize(),
+                        MAX_PARAMS / Math.max(1, columns.length)));
+                for (int from = 0; from < args.size(); from += chunk) {
+                    List<Object[]> part = args.subList(from, Math.min(from + chunk, args.size()));
+                    Object[] paras = new Object[part.size() * columns.length];
+                    for (int i = 0; i < part.size(); i++) {
+                        System.arraycopy(part.get(i), 0, paras, i * columns.length,
+                                columns.length);
+                    }
+                    String sql = dialect.forModelSaveBatch(table, columns, part.size());
+                    total += config.getWriteJdbcTemplate().update(sql, paras);
+                }
+            } else {
+                total += executeBatch(config, dialect.forModelSaveBatch(table, columns, 1), args);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 批量更新，每个bean只更新有修改的字段（同{@link #update(BaseBean)}），
+     * 按修改字段组合分组，每组使用一条预编译sql分批执行
+     *
+     * @param beans
+     * @return 更新条数
+     */
+    public int updateBatch(List<B> beans) {
+        if (CollectionUtils.isEmpty(beans)) {
+            return 0;
+        }
+        Table table = getTable();
+        Config config = table.getConfig();
+        String[] pKeys = table.getPrimaryKey();
+        Dialect dialect = config.getDialect();
+        Map<List<String>, List<Object[]>> groups = new LinkedHashMap<>();
+        for (B bean : beans) {
+            Set<String> modifyFlag = bean._getModifyFlag();
+            if (modifyFlag.isEmpty()) {
+                continue;
+            }
+            Map<String, Object> attrs = bean._getColumns();
+            List<String> columns = new ArrayList<>(modifyFlag.size());
+            List<Object> values = new ArrayList<>(modifyFlag.size() + pKeys.length);
+            for (Map.Entry<String, Object> e : attrs.entrySet()) {
+                String colName = e.getKey();
+                if (modifyFlag.contains(colName) && !dialect.isPrimaryKey(colName, pKeys)
+                        && table.hasColumnLabel(colName)) {
+                    columns.add(colName);
+                    values.add(table.toDbValue(colName, e.getValue()));
+                }
+            }
+            if (columns.isEmpty()) {
+                continue;
+            }
+            for (String pKey : pKeys) {
+                Object id = attrs.get(pKey);
+                if (id == null) {
+                    throw new MyDbException("You can't update model without Primary Key, " + pKey
+                            + " can not be null.");
+                }
+                values.add(id);
+            }
+            List<Object[]> group = groups.get(columns);
+            if (null == group) {
+                group = new ArrayList<>();
+                groups.put(columns, group);
+            }
+            group.add(values.toArray());
+        }
+        int total = 0;
+        for (Map.Entry<List<String>, List<Object[]>> group : groups.entrySet()) {
+            String[] columns = group.getKey().toArray(new String[group.getKey().size()]);
+            total += executeBatch(config, dialect.forModelUpdateBatch(table, columns),
+                    group.getValue());
+        }
+        for (B bean : beans) {
+            bean._getModifyFlag().clear();
+        }
+        return total;
+    }
+
+    /**
+     * 按config.batchSize分批执行JDBC batch
+     *
+     * @return 影响条数，驱动返回SUCCESS_NO_INFO时按1条计算
+     */
+    private int executeBatch(Config config, String sql, List<Object[]> args) {
+        int total = 0;
+        int chunk = Math.max(1, config.getBatchSize());
+        for (int from = 0; from < args.size(); from += chunk) {
+            int[] results = config.getWriteJdbcTemplate().batchUpdate(sql,
+                    args.subList(from, Math.min(from + chunk, args.size())));
+            for (int r : results) {
+                total += r >= 0 ? r : (r == Statement.SUCCESS_NO_INFO ? 1 : 0);
+            }
+        }
+        return total;
+    }
+
     /**
      * Delete model by id.
      *
@@ -91,7 +280,7 @@ public abstract class Model<B extends BaseBean> {
         Table table = getTable(cls);
         Config config = table.getConfig();
         String sql = config.getDialect().forModelDeleteById(table);
-        return config.getJdbcTemplate().update(sql, id) >= 1;
+        return config.getWriteJdbcTemplate().update(sql, id) >= 1;
     }
 
     @Deprecated
@@ -99,7 +288,7 @@ public abstract class Model<B extends BaseBean> {
         Table table = getTable(cls);
         Config config = table.getConfig();
         String sql = config.getDialect().forModelDeleteById(table);
-        return config.getJdbcTemplate().update(sql, id) >= 1;
+        return config.getWriteJdbcTemplate().update(sql, id) >= 1;
     }
 
     /**
@@ -130,7 +319,7 @@ public abstract class Model<B extends BaseBean> {
         if (paras.size() <= 1) { // Needn't update
             return false;
         }
-        int result = config.getJdbcTemplate().update(sql.toString(), paras.toArray());
+        int result = config.getWriteJdbcTemplate().update(sql.toString(), paras.toArray());
         return result >= 1;
     }
 
@@ -159,7 +348,7 @@ public abstract class Model<B extends BaseBean> {
         if (paras.size() <= 1) {
             return false;
         }
-        int result = config.getJdbcTemplate().update(sql.toString(), paras.toArray());
+        int result = config.getWriteJdbcTemplate().update(sql.toString(), paras.toArray());
         if (result >= 1) {
             bean._getModifyFlag().clear();
             return true;
@@ -414,7 +603,7 @@ public abstract class Model<B extends BaseBean> {
      * @return
      */
     public List<Map<String, Object>> findList(String sql, Object... params) {
-        return getJdbcTemplate().queryForList(sql, params);
+        return getConfig().getReadJdbcTemplate().query(sql, COLUMN_MAP_ROW_MAPPER, params);
     }
 
     /**
@@ -425,12 +614,19 @@ public abstract class Model<B extends BaseBean> {
      * @return
      */
     public <T extends Record> List<T> find(final Class<T> cls, String sql, Object... params) {
-        return getJdbcTemplate().query(sql, new RowMapper<T>() {
+        return getConfig().getReadJdbcTemplate().query(sql, new RowMapper<T>() {
+
+            // 列元数据在第一行时读取，后续行复用
+            private RecordBuilder.ColumnMeta meta;
+
             @Override
             public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+                if (null == meta) {
+                    meta = RecordBuilder.ColumnMeta.of(rs, cls);
+                }
                 T bean;
                 try {
-                    bean = RecordBuilder.build(rs, cls);
+                    bean = RecordBuilder.build(rs, cls, meta);
                 } catch (InstantiationException | IllegalAccessException e) {
                     throw new MyDbException(e);
                 }
@@ -585,7 +781,8 @@ public abstract class Model<B extends BaseBean> {
         }
         int totalRow;
         int totalPage;
-        totalRow = getCount(sql, paras);
+        CountStrategy.Count count = config.getCountStrategy().count(config, sql, paras);
+        totalRow = count.getTotalRow();
         if (totalRow < 1) {
             return new Page<>(Lists.<Map<String, Object>> newArrayList(), pageNumber, pageSize, 0,
                     0);
@@ -596,7 +793,10 @@ public abstract class Model<B extends BaseBean> {
         }
         String pageSql = config.getDialect().forPaginate(pageNumber, pageSize, sql);
         List<Map<String, Object>> list = findList(pageSql, paras);
-        return new Page<>(list, pageNumber, pageSize, totalPage, totalRow);
+        Page<Map<String, Object>> page = new Page<>(list, pageNumber, pageSize, totalPage,
+                totalRow);
+        page.setApproximate(count.isApproximate());
+        return page;
     }
 
     public Page<B> page(int pageNumber, int pageSize, String sql, Object... paras) {
@@ -611,7 +811,8 @@ public abstract class Model<B extends BaseBean> {
         }
         int totalRow;
         int totalPage;
-        totalRow = getCount(sql, paras);
+        CountStrategy.Count count = config.getCountStrategy().count(config, sql, paras);
+        totalRow = count.getTotalRow();
         if (totalRow < 1) {
             return new Page<>(Lists.<T> newArrayList(), pageNumber, pageSize, 0, 0);
         }
@@ -621,7 +822,64 @@ public abstract class Model<B extends BaseBean> {
         }
         String pageSql = config.getDialect().forPaginate(pageNumber, pageSize, sql);
         List<T> list = find(cls, pageSql, paras);
-        return new Page<>(list, pageNumber, pageSize, totalPage, totalRow);
+        Page<T> page = new Page<>(list, pageNumber, pageSize, totalPage, totalRow);
+        page.setApproximate(count.isApproximate());
+        return page;
+    }
+
+    public KeysetPage<B> keysetPage(Keyset keyset, int pageSize, boolean countTotal, String sql,
+            Object... paras) {
+        return keysetPage(getUsefulClass(), keyset, pageSize, countTotal, sql, paras);
+    }
+
+    /**
+     * 游标分页，不使用limit offset，适合深翻页的大表
+     *
+     * @param cls 返回值类型
+     * @param keyset 排序字段及上一页游标
+     * @param pageSize 每页条数
+     * @param countTotal 是否统计总记录数，不统计时totalRow为-1
+     * @param sql 查询sql，order by会被替换为keyset的排序；最外层where条件整体加括号后再and游标条件，
+     *            最外层不能包含group by、having、union、limit，否则抛出MyDbException
+     * @param paras 查询参数
+     * @param <T>
+     * @return
+     */
+    public <T extends Record> KeysetPage<T> keysetPage(Class<T> cls, Keyset keyset, int pageSize,
+            boolean countTotal, String sql, Object... paras) {
+        if (pageSize < 1) {
+            throw new MyDbException("pageSize must be more than 0");
+        }
+        Config config = getConfig();
+        int totalRow = countTotal ? config.getCountStrategy().count(config, sql, paras)
+                .getTotalRow() : -1;
+        List<Object> pageParas = Lists.newArrayList(paras);
+        // 多取一条判断是否还有下一页
+        String pageSql = config.getDialect().forKeysetPaginate(sql, keyset, pageSize + 1,
+                pageParas);
+        List<T> list = find(cls, pageSql, pageParas.toArray());
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list.remove(pageSize);
+            nextCursor = keyset.cursorOf(list.get(pageSize - 1));
+        }
+        return new KeysetPage<>(list, pageSize, nextCursor, totalRow);
+    }
+
+    /**
+     * 按主键批量加载列表中的延迟字段（{@link com.fengjx.commons.plugin.db.annotation.Mapper#lazy()}），
+     * 避免逐条Record.get时单独查询
+     *
+     * @param records 当前Model映射表的查询结果
+     */
+    public void loadLazyColumns(List<? extends Record> records) {
+        if (CollectionUtils.isEmpty(records)) {
+            return;
+        }
+        Table table = getTable();
+        if (table.hasLazyColumns()) {
+            LazyColumnLoader.load(records, table);
+        }
     }
 
     /**
@@ -635,7 +893,8 @@ public abstract class Model<B extends BaseBean> {
         Config config = getConfig();
         StringBuilder countSql = new StringBuilder();
         config.getDialect().forCount(countSql, sql);
-        return config.getJdbcTemplate().queryForObject(countSql.toString(), paras, Integer.class);
+        return config.getReadJdbcTemplate().queryForObject(countSql.toString(), paras,
+                Integer.class);
     }
 
     /**
@@ -714,18 +973,18 @@ public abstract class Model<B extends BaseBean> {
     }
 
     /**
-     * 通过class获得映射table的字段（如：id,name,age）
+     * 通过class获得映射table的字段（如：id,name,age），不含延迟加载字段
      *
      * @param cls
      * @return
      */
     public String getColumnsStr(Class<? extends BaseBean> cls) {
         Table t = getTable(cls);
-        return t.getColumnsStr();
+        return t.getSelectColumnsStr();
     }
 
     /**
-     * 通过class获得映射table的字段（如：a.id, a.name, a.age）
+     * 通过class获得映射table的字段（如：a.id, a.name, a.age），不含延迟加载字段
      *
      * @param cls
      * @return
@@ -733,7 +992,7 @@ public abstract class Model<B extends BaseBean> {
     public String getColumnsStr(Class<? extends BaseBean> cls, String alias) {
         Table t = getTable(cls);
         StringBuilder columnsStr = new StringBuilder();
-        String[] columns = t.getColumns();
+        String[] columns = t.getSelectColumns();
         for (String col : columns) {
             columnsStr.append(" ,").append(alias).append(".").append(col);
         }
@@ -913,8 +1172,18 @@ public abstract class Model<B extends BaseBean> {
         return getTable(getUsefulClass());
     }
 
+    /**
+     * 主库，写操作使用，见{@link Config#getWriteJdbcTemplate()}
+     */
     public JdbcTemplate getJdbcTemplate() {
-        return getConfig().getJdbcTemplate();
+        return getConfig().getWriteJdbcTemplate();
+    }
+
+    /**
+     * 查询使用的库，见{@link Config#getReadJdbcTemplate()}
+     */
+    public JdbcTemplate getReadJdbcTemplate() {
+        return getConfig().getReadJdbcTemplate();
     }
 
 }
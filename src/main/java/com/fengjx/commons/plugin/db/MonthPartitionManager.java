@@ -0,0 +1,155 @@
+package com.fengjx.commons.plugin.db;
+
+import com.fengjx.commons.utils.LogUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 按月分区表维护（mysql）
+ * <p>
+ * 表需按 RANGE (TO_DAYS(时间字段)) 分区，分区名为pYYYYMM（存放该月及之前未分区的数据），
+ * 可以有一个 VALUES LESS THAN MAXVALUE 的pmax分区。maintain()：<br>
+ * 1. 预建当前月起premakeMonths个月的分区，数据不会落入pmax；<br>
+ * 2. retentionMonths大于0时删除整月早于retentionMonths个月前的分区，drop partition只删文件，
+ * 不产生大量delete，默认不删除。
+ * <p>
+ * pmax中有数据时新增分区需要reorganize（复制pmax中的数据并锁表），由定时任务在低峰期执行，
+ * 不要在启动时调用。表未分区时只打印警告，不做任何修改。
+ *
+ * @author fengjx.
+ * @date：2016/3/22
+ */
+public class MonthPartitionManager {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MonthPartitionManager.class);
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\w+");
+
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private static final String MAX_PARTITION = "pmax";
+
+    private JdbcTemplate jdbcTemplate;
+
+    private String table;
+
+    // 保留月数（不含当前月），0表示不删除
+    private int retentionMonths;
+
+    // 预建月数（含当前月）
+    private int premakeMonths = 2;
+
+    /**
+     * 预建分区、删除过期分区，异常只记录日志
+     */
+    public synchronized void maintain() {
+        try {
+            List<String> partitions = getPartitions();
+            if (partitions.isEmpty()) {
+                LogUtil.warn(LOG, "表" + table + "未分区，跳过分区维护");
+                return;
+            }
+            YearMonth now = YearMonth.now();
+            premake(partitions, now);
+            if (retentionMonths > 0) {
+                dropExpired(partitions, now.minusMonths(retentionMonths));
+            }
+        } catch (Exception e) {
+            LogUtil.error(LOG, "维护表" + table + "分区失败", e);
+        }
+    }
+
+    /**
+     * 表的分区名，按分区顺序
+     */
+    public List<String> getPartitions() {
+        return jdbcTemplate.queryForList("select partition_name from information_schema.partitions"
+                + " where table_schema = database() and table_name = ?"
+                + " and partition_name is not null order by partition_ordinal_position",
+                String.class, getTable());
+    }
+
+    private void premake(List<String> partitions, YearMonth now) {
+        boolean hasMax = partitions.contains(MAX_PARTITION);
+        YearMonth last = null;
+        for (String name : partitions) {
+            YearMonth month = parse(name);
+            if (null != month && (null == last || month.isAfter(last))) {
+                last = month;
+            }
+        }
+        for (int i = 0; i < premakeMonths; i++) {
+            YearMonth month = now.plusMonths(i);
+            if (null != last && !month.isAfter(last)) {
+                continue;
+            }
+            String partition = "partition " + month.format(NAME_FORMAT)
+                    + " values less than (to_days('" + month.plusMonths(1).atDay(1) + "'))";
+            String sql = hasMax ? "alter table " + getTable() + " reorganize partition "
+                    + MAX_PARTITION + " into (" + partition + ", partition " + MAX_PARTITION
+                    + " values less than maxvalue)"
+                    : "alter table " + getTable() + " add partition (" + partition + ")";
+            jdbcTemplate.execute(sql);
+            partitions.add(month.format(NAME_FORMAT));
+            last = month;
+            LogUtil.info(LOG, "表" + table + "新增分区：" + month.format(NAME_FORMAT));
+        }
+    }
+
+    /**
+     * 删除cutoff之前月份的分区，pYYYYMM中的数据都早于下月1日
+     */
+    private void dropExpired(List<String> partitions, YearMonth cutoff) {
+        StringBuilder expired = new StringBuilder();
+        for (String name : partitions) {
+            YearMonth month = parse(name);
+            if (null != month && month.isBefore(cutoff)) {
+                expired.append(", ").append(name);
+            }
+        }
+        if (expired.length() == 0) {
+            return;
+        }
+        String names = expired.substring(2);
+        jdbcTemplate.execute("alter table " + getTable() + " drop partition " + names);
+        LogUtil.info(LOG, "表" + table + "删除过期分区：" + names);
+    }
+
+    private static YearMonth parse(String partition) {
+        try {
+            return YearMonth.parse(partition, NAME_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private String getTable() {
+        if (null == table || !TABLE_PATTERN.matcher(table).matches()) {
+            throw new MyDbException("invalid partition table: " + table);
+        }
+        return table;
+    }
+
+    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public void setRetentionMonths(int retentionMonths) {
+        this.retentionMonths = retentionMonths;
+    }
+
+    public void setPremakeMonths(int premakeMonths) {
+        this.premakeMonths = premakeMonths;
+    }
+}
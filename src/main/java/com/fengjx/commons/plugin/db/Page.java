@@ -32,6 +32,7 @@ public class Page<T> implements Serializable {
     private int totalPage;				// total page
     private int totalRow;				// total row
     private boolean convert = true;			// 转型标记（是否需要，默认是true）
+    private boolean approximate;			// totalRow是否是估算值
 
     /**
      * Constructor.
@@ -92,6 +93,14 @@ public class Page<T> implements Serializable {
         return pageNumber == totalPage;
     }
 
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
     public boolean isConvert() {
         return convert;
     }
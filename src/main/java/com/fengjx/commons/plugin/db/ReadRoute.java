@@ -0,0 +1,51 @@
+package com.fengjx.commons.plugin.db;
+
+import java.util.function.Supplier;
+
+/**
+ * 读库路由
+ * <p>
+ * 配置了从库时，Model的find*、paginate、page、getCount默认查从库；写操作、读写事务内的查询和
+ * 事务中写入之后的查询走主库。不在事务中写入后马上要读到最新数据（主从延迟）时，
+ * 用{@link #primary(Supplier)}把查询指定到主库：
+ *
+ * <pre>
+ * model.update(attrs);
+ * Record r = ReadRoute.primary(() -> model.findById(id));
+ * </pre>
+ *
+ * @author fengjx.
+ * @date：2016/3/22
+ */
+public final class ReadRoute {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReadRoute() {
+    }
+
+    /**
+     * 在主库上执行action中的查询，可以嵌套
+     */
+    public static <T> T primary(Supplier<T> action) {
+        Boolean old = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (null == old) {
+                PRIMARY.remove();
+            } else {
+                PRIMARY.set(old);
+            }
+        }
+    }
+
+    /**
+     * 当前线程是否指定了查主库
+     */
+    public static boolean isPrimary() {
+        return Boolean.TRUE.equals(PRIMARY.get());
+    }
+
+}
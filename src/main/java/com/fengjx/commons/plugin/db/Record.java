@@ -24,6 +24,9 @@ public class Record implements Serializable {
     // 有修改的字段
     private Set<String> modifyFlag;
 
+    // 有未加载的延迟字段时为所属表的映射类，见Mapper#lazy
+    private Class<? extends BaseBean> lazyClass;
+
     private Map<String, Object> initColumns() {
         return Maps.newLinkedHashMap();
     }
@@ -87,6 +90,10 @@ public class Record implements Serializable {
      * @param columns the columns map
      */
     public Record setColumns(Map<String, Object> columns) {
+        if (this.columns instanceof IndexedColumns && null != modifyFlag) {
+            // 修改标记是原字段存储的视图，替换存储前先复制
+            modifyFlag = Sets.newHashSet(modifyFlag);
+        }
         this.columns = columns;
         return this;
     }
@@ -138,12 +145,35 @@ public class Record implements Serializable {
         return this;
     }
 
+    /**
+     * 字段值，延迟加载字段不存在时按主键加载
+     */
+    private Object getValue(String column) {
+        Object value = _getColumns().get(column);
+        if (null == value && null != lazyClass && !_getColumns().containsKey(column)) {
+            Table table = TableMapping.me().findTable(lazyClass);
+            if (null != table && table.isLazyColumn(column)) {
+                LazyColumnLoader.load(this, table);
+                value = _getColumns().get(column);
+            }
+        }
+        return value;
+    }
+
+    Class<? extends BaseBean> getLazyClass() {
+        return lazyClass;
+    }
+
+    void setLazyClass(Class<? extends BaseBean> lazyClass) {
+        this.lazyClass = lazyClass;
+    }
+
     /**
      * Get column of any mysql type
      */
     @SuppressWarnings("unchecked")
     public <T> T get(String column) {
-        return (T) _getColumns().get(column);
+        return (T) getValue(column);
     }
 
     /**
@@ -151,7 +181,7 @@ public class Record implements Serializable {
      */
     @SuppressWarnings("unchecked")
     public <T> T get(String column, Object defaultValue) {
-        Object result = _getColumns().get(column);
+        Object result = getValue(column);
         return (T) (result != null ? result : defaultValue);
     }
 
@@ -160,7 +190,7 @@ public class Record implements Serializable {
      * mediumtext, longtext
      */
     public String getStr(String column) {
-        return (String) _getColumns().get(column);
+        return (String) getValue(column);
     }
 
     /**
@@ -168,70 +198,70 @@ public class Record implements Serializable {
      * mediumint
      */
     public Integer getInt(String column) {
-        return (Integer) _getColumns().get(column);
+        return (Integer) getValue(column);
     }
 
     /**
      * Get column of mysql type: bigint
      */
     public Long getLong(String column) {
-        return (Long) _getColumns().get(column);
+        return (Long) getValue(column);
     }
 
     /**
      * Get column of mysql type: unsigned bigint
      */
     public java.math.BigInteger getBigInteger(String column) {
-        return (java.math.BigInteger) _getColumns().get(column);
+        return (java.math.BigInteger) getValue(column);
     }
 
     /**
      * Get column of mysql type: date, year
      */
     public java.util.Date getDate(String column) {
-        return (java.util.Date) _getColumns().get(column);
+        return (java.util.Date) getValue(column);
     }
 
     /**
      * Get column of mysql type: time
      */
     public java.sql.Time getTime(String column) {
-        return (java.sql.Time) _getColumns().get(column);
+        return (java.sql.Time) getValue(column);
     }
 
     /**
      * Get column of mysql type: timestamp, datetime
      */
     public java.sql.Timestamp getTimestamp(String column) {
-        return (java.sql.Timestamp) _getColumns().get(column);
+        return (java.sql.Timestamp) getValue(column);
     }
 
     /**
      * Get column of mysql type: real, double
      */
     public Double getDouble(String column) {
-        return (Double) _getColumns().get(column);
+        return (Double) getValue(column);
     }
 
     /**
      * Get column of mysql type: float
      */
     public Float getFloat(String column) {
-        return (Float) _getColumns().get(column);
+        return (Float) getValue(column);
     }
 
     /**
      * Get column of mysql type: bit, tinyint(1)
      */
     public Boolean getBoolean(String column) {
-        return (Boolean) _getColumns().get(column);
+        return (Boolean) getValue(column);
     }
 
     /**
      * Get column of mysql type: decimal, numeric
      */
     public java.math.BigDecimal getBigDecimal(String column) {
-        return (java.math.BigDecimal) _getColumns().get(column);
+        return (java.math.BigDecimal) getValue(column);
     }
 
     /**
@@ -239,14 +269,14 @@ public class Record implements Serializable {
      * longblob I have not finished the test.
      */
     public byte[] getBytes(String column) {
-        return (byte[]) _getColumns().get(column);
+        return (byte[]) getValue(column);
     }
 
     /**
      * Get column of any type that extends from Number
      */
     public Number getNumber(String column) {
-        return (Number) _getColumns().get(column);
+        return (Number) getValue(column);
     }
 
     public String toString() {
@@ -293,7 +323,11 @@ public class Record implements Serializable {
 
     public Set<String> _getModifyFlag() {
         if (this.modifyFlag == null) {
-            modifyFlag = Sets.newHashSet();
+            if (columns instanceof IndexedColumns) {
+                modifyFlag = ((IndexedColumns) columns).modifyFlag();
+            } else {
+                modifyFlag = Sets.newHashSet();
+            }
         }
         return modifyFlag;
     }
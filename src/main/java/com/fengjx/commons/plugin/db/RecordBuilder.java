@@ -17,31 +17,67 @@
 package com.fengjx.commons.plugin.db;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ArrayUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.sql.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * ModelBuilder.
+ * <p>
+ * 列元数据每个ResultSet只解析一次（{@link ColumnMeta}），Record子类的无参构造器按类缓存为MethodHandle，
+ * 避免逐行getMetaData和反射newInstance。
+ * 字段存储使用{@link IndexedColumns}，查询列与表映射一致时共用表的{@link ColumnIndex}。
  */
 public class RecordBuilder {
 
-    @SuppressWarnings({
-            "rawtypes", "unchecked"
-    })
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Record.class);
+
+    /**
+     * Record子类无参构造器缓存，不存在或不可访问时缓存null
+     */
+    private static final ClassValue<MethodHandle> CONSTRUCTORS = new ClassValue<MethodHandle>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findConstructor(type, MethodType.methodType(void.class))
+                        .asType(CONSTRUCTOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    };
+
+    /**
+     * 单行构建，每次都会读取列元数据；多行结果使用{@link #build(ResultSet, Class, ColumnMeta)}
+     */
     public static <T extends Record> T build(ResultSet rs, Class<T> modelClass)
             throws SQLException, InstantiationException, IllegalAccessException {
-        ResultSetMetaData rsmd = rs.getMetaData();
-        int columnCount = rsmd.getColumnCount();
-        String[] labelNames = new String[columnCount + 1];
-        int[] types = new int[columnCount + 1];
-        buildLabelNamesAndTypes(rsmd, labelNames, types);
-        T ar = modelClass.newInstance();
-        Map<String, Object> attrs = ar._getColumns();
-        for (int i = 1; i <= columnCount; i++) {
+        return build(rs, modelClass, ColumnMeta.of(rs, modelClass));
+    }
+
+    public static <T extends Record> T build(ResultSet rs, Class<T> modelClass, ColumnMeta meta)
+            throws SQLException, InstantiationException, IllegalAccessException {
+        T ar = newInstance(modelClass);
+        IndexedColumns indexed = null;
+        Map<String, Object> attrs;
+        if (null != meta.index) {
+            attrs = indexed = new IndexedColumns(meta.index);
+        } else {
+            attrs = new LinkedHashMap<>(meta.capacity);
+        }
+        String[] labelNames = meta.labelNames;
+        int[] types = meta.types;
+        for (int i = 1; i < labelNames.length; i++) {
             Object value;
             if (types[i] < Types.BLOB) {
                 value = rs.getObject(i);
@@ -54,16 +90,131 @@ public class RecordBuilder {
             } else {
                 value = rs.getObject(i);
             }
-            attrs.put(labelNames[i], value);
+            if (meta.compressed[i] && value instanceof byte[]) {
+                // 按列存储时首次读取才解压
+                value = null != indexed ? new ColumnCompressor.Lazy((byte[]) value)
+                        : ColumnCompressor.decompress((byte[]) value);
+            }
+            if (null != indexed) {
+                indexed.putAt(i - 1, value);
+            } else {
+                attrs.put(labelNames[i], value);
+            }
+        }
+        ar.setColumns(attrs);
+        if (null != meta.lazyClass) {
+            ar.setLazyClass(meta.lazyClass);
         }
         return ar;
     }
 
-    private static void buildLabelNamesAndTypes(ResultSetMetaData rsmd, String[] labelNames,
-            int[] types) throws SQLException {
-        for (int i = 1; i < labelNames.length; i++) {
-            labelNames[i] = rsmd.getColumnLabel(i);
-            types[i] = rsmd.getColumnType(i);
+    @SuppressWarnings("unchecked")
+    private static <T extends Record> T newInstance(Class<T> modelClass)
+            throws InstantiationException, IllegalAccessException {
+        MethodHandle constructor = CONSTRUCTORS.get(modelClass);
+        if (null == constructor) {
+            // 没有可访问的无参构造器，沿用反射以抛出原来的异常
+            return modelClass.newInstance();
+        }
+        try {
+            return (T) (Record) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new MyDbException(e);
+        }
+    }
+
+    /**
+     * 结果集列元数据
+     */
+    public static final class ColumnMeta {
+
+        // 下标从1开始，与ResultSet一致
+        private final String[] labelNames;
+
+        private final int[] types;
+
+        // LinkedHashMap初始容量，保证放入所有列不扩容
+        private final int capacity;
+
+        // 列名有重复时为null，使用LinkedHashMap存储
+        private final ColumnIndex index;
+
+        // 是否是压缩字段，下标同labelNames
+        private final boolean[] compressed;
+
+        // 查询结果缺少延迟加载字段时为映射类，Record.get时按主键加载
+        private final Class<? extends BaseBean> lazyClass;
+
+        private ColumnMeta(String[] labelNames, int[] types, boolean[] compressed,
+                ColumnIndex index, Class<? extends BaseBean> lazyClass) {
+            this.labelNames = labelNames;
+            this.types = types;
+            this.compressed = compressed;
+            this.lazyClass = lazyClass;
+            this.capacity = (int) ((labelNames.length - 1) / 0.75f) + 1;
+            this.index = index;
+        }
+
+        public static ColumnMeta of(ResultSet rs) throws SQLException {
+            return of(rs, null);
+        }
+
+        /**
+         * @param modelClass 查询列与该类映射的表一致时，复用表的列索引
+         */
+        public static ColumnMeta of(ResultSet rs, Class<?> modelClass) throws SQLException {
+            ResultSetMetaData rsmd = rs.getMetaData();
+            int columnCount = rsmd.getColumnCount();
+            String[] labelNames = new String[columnCount + 1];
+            int[] types = new int[columnCount + 1];
+            boolean[] compressed = new boolean[columnCount + 1];
+            Table table = null == modelClass ? null : TableMapping.me().findTable(modelClass);
+            for (int i = 1; i <= columnCount; i++) {
+                labelNames[i] = rsmd.getColumnLabel(i);
+                types[i] = rsmd.getColumnType(i);
+                // 映射类的表优先，其他查询（如关联查询的别名）按所有表的压缩字段名判断
+                compressed[i] = null != table ? table.isCompressColumn(labelNames[i])
+                        : TableMapping.me().isCompressColumn(labelNames[i]);
+            }
+            String[] names = Arrays.copyOfRange(labelNames, 1, labelNames.length);
+            ColumnIndex index = null;
+            if (null != table && null != table.getColumnIndex()) {
+                if (table.getColumnIndex().sameColumns(names)) {
+                    index = table.getColumnIndex();
+                } else if (table.getSelectColumnIndex().sameColumns(names)) {
+                    index = table.getSelectColumnIndex();
+                }
+            }
+            if (null == index) {
+                index = ColumnIndex.of(names);
+            }
+            return new ColumnMeta(labelNames, types, compressed, index, lazyClassOf(table, names));
+        }
+
+        /**
+         * 结果包含主键且缺少延迟加载字段时返回映射类
+         */
+        private static Class<? extends BaseBean> lazyClassOf(Table table, String[] names) {
+            if (null == table || !table.hasLazyColumns()) {
+                return null;
+            }
+            for (String pKey : table.getPrimaryKey()) {
+                if (!ArrayUtils.contains(names, pKey)) {
+                    return null;
+                }
+            }
+            for (String lazy : table.getLazyColumns()) {
+                if (!ArrayUtils.contains(names, lazy)) {
+                    return table.getModelClass();
+                }
+            }
+            return null;
+        }
+
+        public int getColumnCount() {
+            return labelNames.length - 1;
         }
     }
 
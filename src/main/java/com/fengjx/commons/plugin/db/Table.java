@@ -5,8 +5,11 @@ import com.google.common.collect.Maps;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Table save the table meta info like column name and column type.
@@ -22,6 +25,16 @@ public class Table {
     private Map<String, Class<?>> columnTypeMap = Maps.newHashMap();
     // 查询字段
     private String columnsStr;
+    // 列表查询字段，不含延迟加载字段
+    private String selectColumnsStr;
+    // 列索引，该表的查询结果共用
+    private ColumnIndex columnIndex;
+    // 列表查询的列索引，没有延迟加载字段时同columnIndex
+    private ColumnIndex selectColumnIndex;
+    // 压缩存储的字段
+    private Set<String> compressColumns;
+    // 延迟加载的字段
+    private String[] lazyColumns;
 
     private Class<? extends BaseBean> beanClass;
 
@@ -42,6 +55,9 @@ public class Table {
         this.name = tableName.trim();
         this.primaryKey = primaryKey;
         this.parentId = TableUtil.getParentId(beanClass);
+        this.compressColumns = Collections.unmodifiableSet(
+                new HashSet<>(Arrays.asList(TableUtil.getCompressColumns(beanClass))));
+        this.lazyColumns = TableUtil.getLazyColumns(beanClass);
         this.beanClass = beanClass;
     }
 
@@ -91,6 +107,24 @@ public class Table {
         return beanClass;
     }
 
+    public boolean isCompressColumn(String column) {
+        return compressColumns.contains(column);
+    }
+
+    public Set<String> getCompressColumns() {
+        return compressColumns;
+    }
+
+    /**
+     * 写入数据库的字段值，压缩字段的文本转为压缩后的byte[]
+     */
+    public Object toDbValue(String column, Object value) {
+        if (value instanceof String && compressColumns.contains(column)) {
+            return ColumnCompressor.compress((String) value);
+        }
+        return value;
+    }
+
     public Map<String, Class<?>> getColumnTypeMap() {
         return Collections.unmodifiableMap(columnTypeMap);
     }
@@ -105,6 +139,50 @@ public class Table {
 
     public void setColumnsStr(String columnsStr) {
         this.columnsStr = columnsStr;
+        this.columnIndex = null == columnsStr ? null : ColumnIndex.of(getColumns());
+        this.selectColumnsStr = columnsStr;
+        this.selectColumnIndex = columnIndex;
+        if (null != columnsStr && lazyColumns.length > 0) {
+            StringBuilder sb = new StringBuilder();
+            for (String col : getColumns()) {
+                if (!isLazyColumn(col)) {
+                    sb.append(" , ").append(col);
+                }
+            }
+            this.selectColumnsStr = sb.delete(0, 3).toString();
+            this.selectColumnIndex = ColumnIndex.of(getSelectColumns());
+        }
+    }
+
+    /**
+     * 列表查询字段（select *时使用），不含延迟加载字段
+     */
+    public String getSelectColumnsStr() {
+        return selectColumnsStr;
+    }
+
+    public String[] getSelectColumns() {
+        return selectColumnsStr.replaceAll(" ", "").split(",");
+    }
+
+    public boolean hasLazyColumns() {
+        return lazyColumns.length > 0;
+    }
+
+    public boolean isLazyColumn(String column) {
+        return ArrayUtils.contains(lazyColumns, column);
+    }
+
+    public String[] getLazyColumns() {
+        return lazyColumns;
+    }
+
+    public ColumnIndex getColumnIndex() {
+        return columnIndex;
+    }
+
+    public ColumnIndex getSelectColumnIndex() {
+        return selectColumnIndex;
     }
 
     public Config getConfig() {
@@ -2,6 +2,7 @@
 package com.fengjx.commons.plugin.db;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -11,6 +12,9 @@ class TableMapping {
 
     private final Map<Class<? extends BaseBean>, Table> modelToTableMap = new ConcurrentHashMap<>();
 
+    // 所有表的压缩字段名，用于关联查询等无法确定表的结果
+    private final Set<String> compressColumns = ConcurrentHashMap.newKeySet();
+
     private static TableMapping me = new TableMapping();
 
     private TableMapping() {
@@ -22,6 +26,14 @@ class TableMapping {
 
     public void putTable(Table table) {
         modelToTableMap.put(table.getModelClass(), table);
+        compressColumns.addAll(table.getCompressColumns());
+    }
+
+    /**
+     * 列名是否是某个表的压缩字段
+     */
+    public boolean isCompressColumn(String column) {
+        return !compressColumns.isEmpty() && compressColumns.contains(column);
     }
 
     public Table getTable(Class<? extends BaseBean> beanClass) {
@@ -32,4 +44,11 @@ class TableMapping {
         }
         return table;
     }
+
+    /**
+     * @return 没有映射时返回null
+     */
+    public Table findTable(Class<?> beanClass) {
+        return modelToTableMap.get(beanClass);
+    }
 }
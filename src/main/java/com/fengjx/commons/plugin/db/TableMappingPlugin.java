@@ -16,6 +16,7 @@ import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.sql.*;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -29,6 +30,9 @@ public class TableMappingPlugin implements IPlugin {
 
     private JdbcTemplate jdbcTemplate;
 
+    // 从库，不配置时读写都走jdbcTemplate
+    private List<JdbcTemplate> readJdbcTemplates;
+
     private String[] packages;
 
     // 数据库方言
@@ -40,9 +44,30 @@ public class TableMappingPlugin implements IPlugin {
     // 是否自动生成ID
     private boolean autoId = true;
 
+    // 分页count结果缓存时间（秒），0不缓存
+    private long countCacheSeconds;
+
+    private long countCacheSize = 1000;
+
+    // 无条件单表分页时，表估算行数超过该值则不再count，0不估算
+    private long countEstimateThreshold;
+
+    // 批量新增、更新每批条数
+    private int batchSize = 500;
+
+    // 批量新增是否合并为多行insert
+    private boolean multiRowInsert;
+
+    private Config config;
+
     @Override
     public void start() {
-        Config config = new Config(getDialect(), getIdGenerator(), isAutoId(), getJdbcTemplate());
+        config = new Config(getDialect(), getIdGenerator(), isAutoId(), getJdbcTemplate());
+        config.setCountStrategy(
+                new CountStrategy(countCacheSeconds, countCacheSize, countEstimateThreshold));
+        config.setBatchSize(batchSize);
+        config.setMultiRowInsert(multiRowInsert);
+        config.setReadJdbcTemplates(readJdbcTemplates);
         try {
             Set<Class<? extends BaseBean>> classSet = getModelClasses();
             for (Class<? extends BaseBean> cls : classSet) {
@@ -161,6 +186,10 @@ public class TableMappingPlugin implements IPlugin {
                     // ". The ColumnClassName can't be mapped: " +
                     // colClassName);
                 }
+                if (table.isCompressColumn(colName)) {
+                    // 数据库中是blob，对外是文本
+                    table.setColumnType(colName, String.class);
+                }
                 columnsStr.append(" , ").append(colName);
             }
             table.setColumnsStr(columnsStr.delete(0, 2).toString());
@@ -189,6 +218,14 @@ public class TableMappingPlugin implements IPlugin {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    public List<JdbcTemplate> getReadJdbcTemplates() {
+        return readJdbcTemplates;
+    }
+
+    public void setReadJdbcTemplates(List<JdbcTemplate> readJdbcTemplates) {
+        this.readJdbcTemplates = readJdbcTemplates;
+    }
+
     public String[] getPackages() {
         return packages;
     }
@@ -197,6 +234,13 @@ public class TableMappingPlugin implements IPlugin {
         this.packages = packages;
     }
 
+    /**
+     * 启动后创建的数据库配置，未启动时为null
+     */
+    public Config getConfig() {
+        return config;
+    }
+
     public Dialect getDialect() {
         if (StrUtil.isBlank(dialect)) {
             return new MysqlDialect();
@@ -231,4 +275,24 @@ public class TableMappingPlugin implements IPlugin {
     public void setAutoId(boolean autoId) {
         this.autoId = autoId;
     }
+
+    public void setCountCacheSeconds(long countCacheSeconds) {
+        this.countCacheSeconds = countCacheSeconds;
+    }
+
+    public void setCountCacheSize(long countCacheSize) {
+        this.countCacheSize = countCacheSize;
+    }
+
+    public void setCountEstimateThreshold(long countEstimateThreshold) {
+        this.countEstimateThreshold = countEstimateThreshold;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
 }
@@ -58,6 +58,34 @@ public class TableUtil {
         return mapper.pid();
     }
 
+    /**
+     * 解析Mapper注解中的压缩字段
+     *
+     * @param cls
+     * @return
+     */
+    public static String[] getCompressColumns(Class<? extends BaseBean> cls) {
+        Mapper mapper = cls.getAnnotation(Mapper.class);
+        if (null == mapper) {
+            throw new MyDbException(cls.getName() + "没有添加@Mapper注解");
+        }
+        return mapper.compress();
+    }
+
+    /**
+     * 解析Mapper注解中的延迟加载字段
+     *
+     * @param cls
+     * @return
+     */
+    public static String[] getLazyColumns(Class<? extends BaseBean> cls) {
+        Mapper mapper = cls.getAnnotation(Mapper.class);
+        if (null == mapper) {
+            throw new MyDbException(cls.getName() + "没有添加@Mapper注解");
+        }
+        return mapper.lazy();
+    }
+
     /**
      * 通过class获得映射Table
      *
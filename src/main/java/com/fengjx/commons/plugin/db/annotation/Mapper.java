@@ -12,4 +12,12 @@ public @interface Mapper {
     String table() default "";
     String id() default "id";
     String pid() default "parent_id";
+    /**
+     * 压缩存储的文本字段，数据库中为blob，见ColumnCompressor
+     */
+    String[] compress() default {};
+    /**
+     * 延迟加载的大字段，列表查询不查询，Record.get时再按主键加载
+     */
+    String[] lazy() default {};
 }
@@ -16,12 +16,16 @@
 
 package com.fengjx.commons.plugin.db.dialect;
 
+import com.fengjx.commons.plugin.db.Keyset;
 import com.fengjx.commons.plugin.db.Model;
+import com.fengjx.commons.plugin.db.MyDbException;
 import com.fengjx.commons.plugin.db.Record;
 import com.fengjx.commons.plugin.db.Table;
 import com.fengjx.commons.plugin.db.Page;
 import com.fengjx.commons.utils.StrUtil;
 
+import org.apache.commons.lang3.ArrayUtils;
+
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -36,6 +40,18 @@ import java.util.regex.Pattern;
  */
 public abstract class Dialect {
 
+    // 生成的sql缓存上限
+    private static final long SQL_CACHE_SIZE = 2000;
+
+    private final SqlCache sqlCache = new SqlCache(SQL_CACHE_SIZE);
+
+    /**
+     * 生成的sql缓存（单表增删改查、count）
+     */
+    public SqlCache getSqlCache() {
+        return sqlCache;
+    }
+
     // Methods for common
     public abstract String forTableBuilderDoBuild(String tableName);
 
@@ -46,6 +62,11 @@ public abstract class Dialect {
 
     public abstract String forPaginate(int pageNumber, int pageSize, String sql);
 
+    /**
+     * 只取前limit条记录
+     */
+    public abstract String forLimit(String sql, int limit);
+
     // Methods for Model
     public abstract String forModelFindById(Table table, String columns);
 
@@ -60,6 +81,28 @@ public abstract class Dialect {
     public abstract void forModelUpdate(Table table, Map<String, Object> attrs, StringBuilder sql,
             List<Object> paras);
 
+    /**
+     * 批量新增sql，参数按columns顺序逐行排列
+     *
+     * @param table
+     * @param columns 新增的列
+     * @param rows 一条sql插入的行数，大于1时需{@link #isMultiRowInsert()}
+     * @return
+     */
+    public abstract String forModelSaveBatch(Table table, String[] columns, int rows);
+
+    /**
+     * 批量更新sql，参数为columns的值 + 主键值
+     */
+    public abstract String forModelUpdateBatch(Table table, String[] columns);
+
+    /**
+     * 是否支持insert ... values (...), (...)
+     */
+    public boolean isMultiRowInsert() {
+        return false;
+    }
+
     public abstract void forModelFind(Table table, StringBuilder sql, String columns,
             String orderby, Map<String, Object> attrs, List<Object> paras);
 
@@ -75,7 +118,12 @@ public abstract class Dialect {
     public abstract void forDbUpdate(String tableName, String[] pKeys, Object[] ids, Record record,
             StringBuilder sql, List<Object> paras);
 
-    public void forCount(StringBuilder countSql, String sql) {
+    public void forCount(StringBuilder countSql, final String sql) {
+        countSql.append(sqlCache.get(() -> buildCountSql(sql), "count", sql));
+    }
+
+    private String buildCountSql(String sql) {
+        StringBuilder countSql = new StringBuilder();
         sql = replaceOrderBy(sql.toLowerCase(Locale.ENGLISH));
         if (StrUtil.countStr(sql, "from") > 1) {
             countSql.append("select count(1) from ( ");
@@ -86,6 +134,139 @@ public abstract class Dialect {
             countSql.append("select count(1) ");
             countSql.append(sql.substring(index));
         }
+        return countSql.toString();
+    }
+
+    /**
+     * 游标分页不支持的最外层子句
+     */
+    private static final String[] KEYSET_UNSUPPORTED = { "group", "having", "union", "limit" };
+
+    /**
+     * 游标分页sql：去掉原有order by，追加游标条件、按keyset排序并取前limit条
+     * <p>
+     * 原查询最外层的where条件整体加括号后再and游标条件（条件中有or也不受影响），子查询中的where不受影响；
+     * 最外层包含group by、having、union、limit时无法追加条件，抛出异常
+     *
+     * @param sql 查询sql
+     * @param keyset 游标
+     * @param limit 条数
+     * @param paras 原查询参数，游标条件的参数会追加到后面
+     * @return
+     */
+    public String forKeysetPaginate(String sql, Keyset keyset, int limit, List<Object> paras) {
+        String base = replaceOrderBy(sql).trim();
+        int whereEnd = topLevelWhereEnd(base);
+        StringBuilder ret = new StringBuilder(base.length() + 128);
+        String[] columns = keyset.getColumns();
+        Object[] after = keyset.getAfter();
+        if (null == after) {
+            ret.append(base);
+        } else {
+            if (whereEnd < 0) {
+                ret.append(base).append(" where (");
+            } else {
+                ret.append(base, 0, whereEnd).append(" (").append(base.substring(whereEnd).trim())
+                        .append(") and (");
+            }
+            String op = keyset.isDesc() ? " < ?" : " > ?";
+            // (c1 < ?) or (c1 = ? and c2 < ?) or ...，比行值比较更容易用上索引
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    ret.append(" or ");
+                }
+                ret.append("(");
+                for (int j = 0; j < i; j++) {
+                    ret.append(columns[j]).append(" = ? and ");
+                    paras.add(after[j]);
+                }
+                ret.append(columns[i]).append(op).append(")");
+                paras.add(after[i]);
+            }
+            ret.append(")");
+        }
+        ret.append(" order by ");
+        String direction = keyset.isDesc() ? " desc" : " asc";
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                ret.append(", ");
+            }
+            ret.append(columns[i]).append(direction);
+        }
+        return forLimit(ret.toString(), limit);
+    }
+
+    /**
+     * 最外层（不在括号、引号中）where关键字结束的位置
+     *
+     * @return 没有where时返回-1
+     */
+    private static int topLevelWhereEnd(String sql) {
+        int len = sql.length();
+        int depth = 0;
+        int whereEnd = -1;
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                // 跳过字符串和带引号的标识符，''转义视为两段相邻的字符串
+                int end = sql.indexOf(c, i + 1);
+                i = end < 0 ? len : end;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && Character.isLetter(c)
+                    && (i == 0 || !isIdentifierPart(sql.charAt(i - 1)))) {
+                int end = i;
+                while (end < len && isIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end).toLowerCase(Locale.ENGLISH);
+                if ("where".equals(word)) {
+                    whereEnd = end;
+                } else if (ArrayUtils.contains(KEYSET_UNSUPPORTED, word)) {
+                    throw new MyDbException("keyset pagination does not support top level "
+                            + word + ": " + sql);
+                }
+                i = end - 1;
+            }
+        }
+        return whereEnd;
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    /**
+     * 按单主键批量查询，如：select id, c1, c2 from t where id in (?, ?)
+     *
+     * @param table
+     * @param columns 查询字段，不含主键
+     * @param size 主键个数
+     * @return
+     */
+    public String forModelFindByIds(Table table, String[] columns, int size) {
+        return sqlCache.get(() -> {
+            String pKey = table.getPrimaryKey()[0];
+            StringBuilder sql = new StringBuilder("select ").append(pKey);
+            for (String column : columns) {
+                sql.append(", ").append(column);
+            }
+            sql.append(" from ").append(table.getName()).append(" where ").append(pKey)
+                    .append(" in (");
+            for (int i = 0; i < size; i++) {
+                sql.append(i > 0 ? ", ?" : "?");
+            }
+            return sql.append(")").toString();
+        }, "findByIds", table.getName(), columns, size);
+    }
+
+    /**
+     * 查询表估算行数的sql，参数为表名；返回null表示不支持
+     */
+    public String forTableRowEstimate() {
+        return null;
     }
 
     public boolean isOracle() {
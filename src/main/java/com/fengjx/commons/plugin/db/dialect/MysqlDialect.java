@@ -21,6 +21,7 @@ import com.fengjx.commons.plugin.db.Table;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -37,24 +38,60 @@ public class MysqlDialect extends Dialect {
 
     public void forModelSave(Table table, Map<String, Object> attrs, StringBuilder sql,
             List<Object> paras) {
-        sql.append("insert into `").append(table.getName()).append("`(");
-        StringBuilder temp = new StringBuilder(") values(");
+        final String[] columns = new String[attrs.size()];
+        int n = 0;
         for (Entry<String, Object> e : attrs.entrySet()) {
             String colName = e.getKey();
             if (table.hasColumnLabel(colName)) {
-                if (paras.size() > 0) {
-                    sql.append(", ");
-                    temp.append(", ");
-                }
-                sql.append("`").append(colName).append("`");
-                temp.append("?");
-                paras.add(e.getValue());
+                columns[n++] = colName;
+                paras.add(table.toDbValue(colName, e.getValue()));
             }
         }
-        sql.append(temp.toString()).append(")");
+        final String[] cols = n == columns.length ? columns : Arrays.copyOf(columns, n);
+        sql.append(forModelSaveBatch(table, cols, 1));
+    }
+
+    @Override
+    public String forModelSaveBatch(Table table, String[] columns, int rows) {
+        return getSqlCache().get(() -> buildSave(table, columns, rows), "save", table.getName(),
+                columns, rows);
+    }
+
+    @Override
+    public String forModelUpdateBatch(Table table, String[] columns) {
+        return getSqlCache().get(() -> buildUpdate(table, columns), "update", table.getName(),
+                columns);
+    }
+
+    @Override
+    public boolean isMultiRowInsert() {
+        return true;
+    }
+
+    private String buildSave(Table table, String[] columns, int rows) {
+        StringBuilder sql = new StringBuilder("insert into `").append(table.getName()).append("`(");
+        StringBuilder values = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append("`").append(columns[i]).append("`");
+            values.append("?");
+        }
+        values.append(")");
+        sql.append(") values");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i > 0 ? ", " : "").append(values);
+        }
+        return sql.toString();
     }
 
     public String forModelDeleteById(Table table) {
+        return getSqlCache().get(() -> buildDeleteById(table), "deleteById", table.getName());
+    }
+
+    private String buildDeleteById(Table table) {
         String[] pKeys = table.getPrimaryKey();
         StringBuilder sql = new StringBuilder(45);
         sql.append("delete from `");
@@ -71,73 +108,93 @@ public class MysqlDialect extends Dialect {
 
     public void forModelUpdate(Table table, Map<String, Object> attrs, Set<String> modifyFlag,
             StringBuilder sql, List<Object> paras) {
-        sql.append("update `").append(table.getName()).append("` set ");
+        forModelUpdateColumns(table, attrs, modifyFlag, sql, paras);
+    }
+
+    public void forModelUpdate(Table table, Map<String, Object> attrs, StringBuilder sql,
+            List<Object> paras) {
+        forModelUpdateColumns(table, attrs, null, sql, paras);
+    }
+
+    /**
+     * @param modifyFlag 为null时更新attrs中所有非主键字段
+     */
+    private void forModelUpdateColumns(Table table, Map<String, Object> attrs,
+            Set<String> modifyFlag, StringBuilder sql, List<Object> paras) {
         String[] pKeys = table.getPrimaryKey();
+        final String[] columns = new String[attrs.size()];
+        int n = 0;
         for (Entry<String, Object> e : attrs.entrySet()) {
             String colName = e.getKey();
-            if (modifyFlag.contains(colName) && !isPrimaryKey(colName, pKeys)
-                    && table.hasColumnLabel(colName)) {
-                if (paras.size() > 0) {
-                    sql.append(", ");
-                }
-                sql.append("`").append(colName).append("` = ? ");
-                paras.add(e.getValue());
+            if ((null == modifyFlag || modifyFlag.contains(colName))
+                    && !isPrimaryKey(colName, pKeys) && table.hasColumnLabel(colName)) {
+                columns[n++] = colName;
+                paras.add(table.toDbValue(colName, e.getValue()));
             }
         }
-        sql.append(" where ");
-        for (int i = 0; i < pKeys.length; i++) {
-            if (i > 0) {
-                sql.append(" and ");
-            }
-            sql.append("`").append(pKeys[i]).append("` = ?");
-            paras.add(attrs.get(pKeys[i]));
+        for (String pKey : pKeys) {
+            paras.add(attrs.get(pKey));
         }
+        final String[] cols = n == columns.length ? columns : Arrays.copyOf(columns, n);
+        sql.append(forModelUpdateBatch(table, cols));
     }
 
-    public void forModelUpdate(Table table, Map<String, Object> attrs, StringBuilder sql,
-            List<Object> paras) {
-        sql.append("update `").append(table.getName()).append("` set ");
-        String[] pKeys = table.getPrimaryKey();
-        for (Entry<String, Object> e : attrs.entrySet()) {
-            String colName = e.getKey();
-            if (!isPrimaryKey(colName, pKeys) && table.hasColumnLabel(colName)) {
-                if (paras.size() > 0) {
-                    sql.append(", ");
-                }
-                sql.append("`").append(colName).append("` = ? ");
-                paras.add(e.getValue());
+    private String buildUpdate(Table table, String[] columns) {
+        StringBuilder sql = new StringBuilder("update `").append(table.getName()).append("` set ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
             }
+            sql.append("`").append(columns[i]).append("` = ? ");
         }
         sql.append(" where ");
+        String[] pKeys = table.getPrimaryKey();
         for (int i = 0; i < pKeys.length; i++) {
             if (i > 0) {
                 sql.append(" and ");
             }
             sql.append("`").append(pKeys[i]).append("` = ?");
-            paras.add(attrs.get(pKeys[i]));
         }
+        return sql.toString();
     }
 
     public void forModelFind(Table table, StringBuilder sql, String columns, String orderby,
             Map<String, Object> attrs, List<Object> paras) {
-        sql.append(froSelectSql(table, columns));
-        sql.append(" where 1 = 1 ");
+        String[] conditions = new String[MapUtils.isEmpty(attrs) ? 0 : attrs.size()];
+        int n = 0;
         if (!MapUtils.isEmpty(attrs)) {
             for (Entry<String, Object> e : attrs.entrySet()) {
                 String colName = e.getKey();
                 if (null != e.getValue() && StringUtils.isNotEmpty(e.getValue().toString())
                         && table.hasColumnLabel(colName)) {
-                    sql.append("and ").append(colName).append(" = ? ");
+                    conditions[n++] = colName;
                     paras.add(e.getValue());
                 }
             }
         }
+        final String[] cols = n == conditions.length ? conditions : Arrays.copyOf(conditions, n);
+        sql.append(getSqlCache().get(() -> buildFind(table, columns, orderby, cols), "find",
+                table.getName(), columns, orderby, cols));
+    }
+
+    private String buildFind(Table table, String columns, String orderby, String[] conditions) {
+        StringBuilder sql = new StringBuilder(froSelectSql(table, columns));
+        sql.append(" where 1 = 1 ");
+        for (String colName : conditions) {
+            sql.append("and ").append(colName).append(" = ? ");
+        }
         if (StringUtils.isNotBlank(orderby)) {
             sql.append(" ").append(orderby);
         }
+        return sql.toString();
     }
 
     public String forModelFindById(Table table, String columns) {
+        return getSqlCache().get(() -> buildFindById(table, columns), "findById",
+                table.getName(), columns);
+    }
+
+    private String buildFindById(Table table, String columns) {
         StringBuilder sql = new StringBuilder("select ");
         columns = columns.trim();
         if ("*".equals(columns)) {
@@ -258,11 +315,26 @@ public class MysqlDialect extends Dialect {
         return ret.toString();
     }
 
+    @Override
+    public String forTableRowEstimate() {
+        return "select table_rows from information_schema.tables where table_schema = database() and table_name = ?";
+    }
+
+    @Override
+    public String forLimit(String sql, int limit) {
+        return sql + " limit " + limit;
+    }
+
     @Override
     public String froSelectSql(Table table, String columns) {
+        return getSqlCache().get(() -> buildSelect(table, columns), "select", table.getName(),
+                columns);
+    }
+
+    private String buildSelect(Table table, String columns) {
         StringBuilder sql = new StringBuilder("select ");
         if (StringUtils.isBlank(columns) || columns.trim().equals("*")) {
-            columns = table.getColumnsStr();
+            columns = table.getSelectColumnsStr();
         }
         sql.append(columns);
         sql.append(" from ");
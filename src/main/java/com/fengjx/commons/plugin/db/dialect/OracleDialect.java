@@ -41,7 +41,7 @@ public class OracleDialect extends Dialect {
 	public String froSelectSql(Table table, String columns) {
 		StringBuilder sql = new StringBuilder("select ");
 		if (StringUtils.isBlank(columns) || columns.trim().equals("*")) {
-			columns = table.getColumnsStr();
+			columns = table.getSelectColumnsStr();
 		}
 		sql.append(columns);
 		sql.append(" from ");
@@ -70,13 +70,51 @@ public class OracleDialect extends Dialect {
 					temp.append(value);
 				} else {
 					temp.append("?");
-					paras.add(value);
+					paras.add(table.toDbValue(colName, value));
 				}
 			}
 		}
 		sql.append(temp.toString()).append(")");
 	}
 
+	@Override
+	public String forModelSaveBatch(Table table, String[] columns, int rows) {
+		if (rows != 1) {
+			throw new IllegalArgumentException("oracle does not support multi-row insert");
+		}
+		StringBuilder sql = new StringBuilder("insert into ").append(table.getName()).append("(");
+		StringBuilder temp = new StringBuilder(") values(");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+				temp.append(", ");
+			}
+			sql.append(columns[i]);
+			temp.append("?");
+		}
+		return sql.append(temp).append(")").toString();
+	}
+
+	@Override
+	public String forModelUpdateBatch(Table table, String[] columns) {
+		StringBuilder sql = new StringBuilder("update ").append(table.getName()).append(" set ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(columns[i]).append(" = ? ");
+		}
+		sql.append(" where ");
+		String[] pKeys = table.getPrimaryKey();
+		for (int i = 0; i < pKeys.length; i++) {
+			if (i > 0) {
+				sql.append(" and ");
+			}
+			sql.append(pKeys[i]).append(" = ?");
+		}
+		return sql.toString();
+	}
+
 	public String forModelDeleteById(Table table) {
 		String[] pKeys = table.getPrimaryKey();
 		StringBuilder sql = new StringBuilder(45);
@@ -104,7 +142,7 @@ public class OracleDialect extends Dialect {
 					sql.append(", ");
 				}
 				sql.append(colName).append(" = ? ");
-				paras.add(e.getValue());
+				paras.add(table.toDbValue(colName, e.getValue()));
 			}
 		}
 		sql.append(" where ");
@@ -128,7 +166,7 @@ public class OracleDialect extends Dialect {
 					sql.append(", ");
 				}
 				sql.append(colName).append(" = ? ");
-				paras.add(e.getValue());
+				paras.add(table.toDbValue(colName, e.getValue()));
 			}
 		}
 		sql.append(" where ");
@@ -275,6 +313,16 @@ public class OracleDialect extends Dialect {
 		return ret.toString();
 	}
 
+	@Override
+	public String forTableRowEstimate() {
+		return "select num_rows from user_tables where table_name = upper(?)";
+	}
+
+	@Override
+	public String forLimit(String sql, int limit) {
+		return "select * from ( " + sql + " ) where rownum <= " + limit;
+	}
+
 	public boolean isOracle() {
 		return true;
 	}
@@ -0,0 +1,96 @@
+package com.fengjx.commons.plugin.db.dialect;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 方言生成的sql缓存
+ * <p>
+ * key由操作类型、表名、列名数组等组成，列名通常来自表映射或常量，String的hashCode有缓存，
+ * 拼key比重新拼sql便宜得多。缓存有上限，超出按LRU淘汰。
+ *
+ * @author fengjx.
+ * @date：2016/3/21
+ */
+public class SqlCache {
+
+    private final Cache<Key, String> cache;
+
+    public SqlCache(long maximumSize) {
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+    }
+
+    /**
+     * 获取缓存的sql，不存在时调用builder生成
+     *
+     * @param builder sql生成
+     * @param key key的组成部分，可以包含数组
+     * @return
+     */
+    public String get(Supplier<String> builder, Object... key) {
+        Key k = new Key(key);
+        String sql = cache.getIfPresent(k);
+        if (null == sql) {
+            // 并发时可能重复生成，结果相同，不需要加锁
+            sql = builder.get();
+            cache.put(k, sql);
+        }
+        return sql;
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("size", cache.size());
+        res.put("hitCount", stats.hitCount());
+        res.put("missCount", stats.missCount());
+        res.put("hitRate", stats.hitRate());
+        res.put("evictionCount", stats.evictionCount());
+        return res;
+    }
+
+    private static final class Key {
+
+        private final Object[] parts;
+
+        private final int hash;
+
+        Key(Object[] parts) {
+            this.parts = parts;
+            this.hash = Arrays.deepHashCode(parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash
+                    && Arrays.deepEquals(parts, ((Key) o).parts);
+        }
+    }
+
+}
@@ -1,42 +1,73 @@
-
 package com.fengjx.commons.utils;
 
+import com.fengjx.commons.config.GetPropertiesVal;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
 import javax.net.ssl.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
 import java.net.URLEncoder;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Map.Entry;
-
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * http请求工具类
+ * <p>
+ * 所有请求共用一个连接池（keep-alive），支持gzip；超时和连接数通过app.properties中http.*配置。
+ */
 public class HttpUtil {
 
     private static final Logger LOG = Logger.getLogger(HttpUtil.class);
 
-    private static final String GET = "GET";
-    private static final String POST = "POST";
     private static final String CHARSET = "UTF-8";
 
-    private HttpUtil() {
-    }
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.3; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/33.0.1750.146 Safari/537.36";
+
+    // 连接池最大连接数
+    private static final int MAX_TOTAL = getIntConfig("http.maxTotal", 200);
+    // 每个域名最大连接数
+    private static final int MAX_PER_ROUTE = getIntConfig("http.maxPerRoute", 20);
+    // 建立连接超时
+    private static final int CONNECT_TIMEOUT = getIntConfig("http.connectTimeout", 3000);
+    // 读取数据超时
+    private static final int READ_TIMEOUT = getIntConfig("http.readTimeout", 5000);
+    // 从连接池获取连接超时
+    private static final int POOL_TIMEOUT = getIntConfig("http.poolTimeout", 1000);
+    // 整个请求最长时间，超时后中断请求
+    private static final int TOTAL_TIMEOUT = getIntConfig("http.totalTimeout", 8000);
 
-    /**
-     * https 域名校验
-     */
-    private class TrustAnyHostnameVerifier implements HostnameVerifier {
-        public boolean verify(String hostname, SSLSession session) {
-            return true;
-        }
+    private HttpUtil() {
     }
 
     /**
@@ -56,69 +87,92 @@ public class HttpUtil {
         }
     }
 
-    private static final SSLSocketFactory sslSocketFactory = initSSLSocketFactory();
-    private static final TrustAnyHostnameVerifier trustAnyHostnameVerifier = new HttpUtil().new TrustAnyHostnameVerifier();
+    private static final PoolingHttpClientConnectionManager connectionManager = initConnectionManager();
 
-    private static SSLSocketFactory initSSLSocketFactory() {
+    private static final CloseableHttpClient httpClient = HttpClients.custom()
+            .setConnectionManager(connectionManager).setUserAgent(USER_AGENT)
+            .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(CONNECT_TIMEOUT)
+                    .setSocketTimeout(READ_TIMEOUT).setConnectionRequestTimeout(POOL_TIMEOUT)
+                    .build())
+            .build();
+
+    /**
+     * 超过TOTAL_TIMEOUT的请求由这里abort
+     */
+    private static final ScheduledThreadPoolExecutor abortScheduler = initAbortScheduler();
+
+    /**
+     * 最多统计的接口数，超出后新接口计入OTHER_ENDPOINT（调用方可能传入任意url，避免无限增长）
+     */
+    private static final int MAX_ENDPOINTS = 200;
+
+    private static final String OTHER_ENDPOINT = "other";
+
+    private static final ConcurrentMap<String, Stats> STATS = new ConcurrentHashMap<>();
+
+    private static PoolingHttpClientConnectionManager initConnectionManager() {
         try {
             TrustManager[] tm = {
                     new HttpUtil().new TrustAnyTrustManager()
             };
             SSLContext sslContext = SSLContext.getInstance("SSL", "SunJSSE");
             sslContext.init(null, tm, new java.security.SecureRandom());
-            return sslContext.getSocketFactory();
+            Registry<ConnectionSocketFactory> registry = RegistryBuilder
+                    .<ConnectionSocketFactory> create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new SSLConnectionSocketFactory(sslContext,
+                            SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER))
+                    .build();
+            // 连接最长保留60秒
+            PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager(
+                    registry, null, null, null, 60, TimeUnit.SECONDS);
+            manager.setMaxTotal(MAX_TOTAL);
+            manager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+            return manager;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-    private static HttpURLConnection getHttpConnection(String url, String method,
-            Map<String, String> headers) throws IOException, NoSuchAlgorithmException,
-            NoSuchProviderException, KeyManagementException {
-        LOG.debug("getHttpConnection url=[" + url + "], method=[" + method + "], header=["
-                + headers + "]");
-        URL _url = new URL(url);
-        HttpURLConnection conn = (HttpURLConnection) _url.openConnection();
-        if (conn instanceof HttpsURLConnection) {
-            ((HttpsURLConnection) conn).setSSLSocketFactory(sslSocketFactory);
-            ((HttpsURLConnection) conn).setHostnameVerifier(trustAnyHostnameVerifier);
-        }
-
-        conn.setRequestMethod(method);
-        conn.setDoOutput(true);
-        conn.setDoInput(true);
-
-        conn.setConnectTimeout(19000);
-        conn.setReadTimeout(19000);
+    private static ScheduledThreadPoolExecutor initAbortScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "http-abort");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        // 定期清理过期和空闲连接
+        scheduler.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
+        }, 30, 30, TimeUnit.SECONDS);
+        return scheduler;
+    }
 
-        conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-        conn.setRequestProperty(
-                "User-Agent",
-                "Mozilla/5.0 (Windows NT 6.3; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/33.0.1750.146 Safari/537.36");
+    private static int getIntConfig(String key, int defaultValue) {
+        try {
+            return NumberUtils.toInt(GetPropertiesVal.getLabel(key), defaultValue);
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
 
+    private static <T extends HttpRequestBase> T buildRequest(T request, Map<String, String> headers) {
+        LOG.debug("buildRequest url=[" + request.getURI() + "], method=[" + request.getMethod()
+                + "], header=[" + headers + "]");
+        request.setHeader("Content-Type", "application/x-www-form-urlencoded");
         if (headers != null && !headers.isEmpty())
             for (Entry<String, String> entry : headers.entrySet())
-                conn.setRequestProperty(entry.getKey(), entry.getValue());
-
-        return conn;
+                request.setHeader(entry.getKey(), entry.getValue());
+        return request;
     }
 
     /**
      * 发送 get 请求
      */
     public static String get(String url, Map<String, String> queryParas, Map<String, String> headers) {
-        HttpURLConnection conn = null;
-        try {
-            conn = getHttpConnection(buildUrlWithQueryString(url, queryParas), GET, headers);
-            conn.connect();
-            return readResponseString(conn);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
-        }
+        HttpGet get = buildRequest(new HttpGet(buildUrlWithQueryString(url, queryParas)), headers);
+        return toString(execute(get));
     }
 
     public static String get(String url, Map<String, String> queryParas) {
@@ -135,25 +189,11 @@ public class HttpUtil {
      */
     public static String post(String url, Map<String, String> queryParas, String data,
             Map<String, String> headers) {
-        HttpURLConnection conn = null;
-        try {
-            conn = getHttpConnection(buildUrlWithQueryString(url, queryParas), POST, headers);
-            conn.connect();
-
-            OutputStream out = conn.getOutputStream();
-            out.write(data.getBytes(CHARSET));
-            LOG.debug("post write data:{" + data + "}");
-            out.flush();
-            out.close();
-
-            return readResponseString(conn);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
-        }
+        HttpPost post = buildRequest(new HttpPost(buildUrlWithQueryString(url, queryParas)),
+                headers);
+        post.setEntity(new StringEntity(data, CHARSET));
+        LOG.debug("post write data:{" + data + "}");
+        return toString(execute(post));
     }
 
     public static String post(String url, Map<String, String> queryParas, String data) {
@@ -168,39 +208,67 @@ public class HttpUtil {
         return post(url, null, data, null);
     }
 
-    private static String readResponseString(HttpURLConnection conn) {
-        StringBuilder sb = new StringBuilder();
-        InputStream inputStream = null;
-        BufferedReader reader = null;
-        try {
-            inputStream = conn.getInputStream();
-            reader = new BufferedReader(new InputStreamReader(inputStream, CHARSET));
-            String line = null;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append("\n");
+    /**
+     * 执行请求，读取完响应后连接归还连接池
+     */
+    private static byte[] execute(HttpRequestBase request) {
+        long start = System.currentTimeMillis();
+        Stats stats = getStats(request.getURI());
+        ScheduledFuture<?> abort = abortScheduler.schedule(request::abort, TOTAL_TIMEOUT,
+                TimeUnit.MILLISECONDS);
+        boolean success = false;
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
+            HttpEntity entity = response.getEntity();
+            byte[] body = null == entity ? new byte[0] : EntityUtils.toByteArray(entity);
+            if (status >= 400) {
+                throw new IOException("Server returned HTTP response code: " + status
+                        + " for URL: " + request.getURI());
             }
-            LOG.debug("readResponseString resStr=" + sb + "");
-            return sb.toString();
+            LOG.debug("readResponse status=" + status + ", length=" + body.length);
+            success = true;
+            return body;
         } catch (Exception e) {
             throw new RuntimeException(e);
         } finally {
-            if (null != inputStream) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    inputStream = null;
-                    throw new RuntimeException(e);
-                }
-            }
-            if (null != reader) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    reader = null;
-                    throw new RuntimeException(e);
-                }
+            abort.cancel(false);
+            stats.record(System.currentTimeMillis() - start, success);
+        }
+    }
+
+    private static String toString(byte[] body) {
+        try {
+            return new String(body, CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Stats getStats(URI uri) {
+        String endpoint = uri.getScheme() + "://" + uri.getHost()
+                + (uri.getPort() > 0 ? ":" + uri.getPort() : "") + StringUtils.defaultString(uri.getPath());
+        Stats stats = STATS.get(endpoint);
+        if (null == stats && STATS.size() >= MAX_ENDPOINTS) {
+            endpoint = OTHER_ENDPOINT;
+            stats = STATS.get(endpoint);
+        }
+        if (null == stats) {
+            Stats newStats = new Stats();
+            stats = STATS.putIfAbsent(endpoint, newStats);
+            if (null == stats) {
+                stats = newStats;
             }
         }
+        return stats;
+    }
+
+    /**
+     * 各接口（不含参数的url）的调用统计，超过MAX_ENDPOINTS个接口后其余接口合计为other
+     *
+     * @return
+     */
+    public static Map<String, Stats> getStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(STATS));
     }
 
     /**
@@ -257,23 +325,53 @@ public class HttpUtil {
 
     /**
      * 发送http GET请求取得返回的输入流
-     * 
+     * <p>
+     * 响应内容已读取到内存，连接已归还连接池，调用方无需关闭
+     *
      * @param requestUrl 请求地址
      * @return InputStream
      */
     public static InputStream httpRequest(String requestUrl) {
-        InputStream inputStream = null;
-        try {
-            URL url = new URL(requestUrl);
-            HttpURLConnection httpUrlConn = (HttpURLConnection) url.openConnection();
-            httpUrlConn.setDoInput(true);
-            httpUrlConn.setRequestMethod(GET);
-            httpUrlConn.connect();
-            // 获得返回的输入流
-            inputStream = httpUrlConn.getInputStream();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        return new ByteArrayInputStream(execute(buildRequest(new HttpGet(requestUrl), null)));
+    }
+
+    /**
+     * 接口调用统计
+     */
+    public static class Stats {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errorCount = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+
+        void record(long millis, boolean success) {
+            count.incrementAndGet();
+            if (!success) {
+                errorCount.incrementAndGet();
+            }
+            totalMillis.addAndGet(millis);
+            long max;
+            while ((max = maxMillis.get()) < millis && !maxMillis.compareAndSet(max, millis)) {
+                // retry
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getErrorCount() {
+            return errorCount.get();
+        }
+
+        public long getAvgMillis() {
+            long c = count.get();
+            return c == 0 ? 0 : totalMillis.get() / c;
+        }
+
+        public long getMaxMillis() {
+            return maxMillis.get();
         }
-        return inputStream;
     }
 }
@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.api.restful;
 
+import com.fengjx.commons.plugin.cache.memory.LookupCache;
 import com.fengjx.commons.utils.HttpUtil;
 import com.fengjx.commons.utils.LogUtil;
 
@@ -15,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 百度音乐搜索API操作类
@@ -26,6 +28,11 @@ public class BaiduMusicServiceApi {
 
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(BaiduMusicServiceApi.class);
 
+    /**
+     * 音乐链接缓存（12小时）
+     */
+    private static final LookupCache CACHE = new LookupCache(12 * 60, 1, TimeUnit.MINUTES, 2000);
+
     // 测试方法
     public static void main(String[] args) {
         WxMpXmlOutMusicMessage music = searchMusic("相信自己", "零点乐队");
@@ -43,6 +50,32 @@ public class BaiduMusicServiceApi {
      * @return Music
      */
     public static WxMpXmlOutMusicMessage searchMusic(String musicTitle, String musicAuthor) {
+        // 只缓存解析出的音乐链接，消息对象每次新建
+        String[] urls = CACHE.get(musicTitle + "$$" + musicAuthor,
+                () -> loadMusicUrls(musicTitle, musicAuthor));
+        if (null == urls) {
+            return null;
+        }
+        WxMpXmlOutMusicMessage music = WxMpXmlOutMessage.MUSIC().build();
+        music.setMusicUrl(urls[0]);
+        music.setHqMusicUrl(urls[1]);
+        music.setTitle(musicTitle);
+        // 如果作者不为""，将描述设置为作者
+        if (!"".equals(musicAuthor))
+            music.setDescription(musicAuthor);
+        else
+            music.setDescription("来自百度音乐");
+        return music;
+    }
+
+    /**
+     * 调用百度音乐搜索接口
+     *
+     * @param musicTitle 音乐名称
+     * @param musicAuthor 音乐作者
+     * @return [普通品质链接, 高品质链接]
+     */
+    private static String[] loadMusicUrls(String musicTitle, String musicAuthor) {
         // 百度音乐搜索地址
         String requestUrl = "http://box.zhangmen.baidu.com/x?op=12&count=1&title={TITLE}$${AUTHOR}$$$$";
         // 对音乐名称、作者进URL编码
@@ -52,20 +85,9 @@ public class BaiduMusicServiceApi {
         requestUrl = requestUrl.replaceAll("\\+", "%20");
 
         // 查询并获取返回结果
-        InputStream inputStream = null;
-        inputStream = HttpUtil.httpRequest(requestUrl);
+        InputStream inputStream = HttpUtil.httpRequest(requestUrl);
         // 从返回结果中解析出Music
-        WxMpXmlOutMusicMessage music = parseMusic(inputStream);
-        // 如果music不为null，设置标题和描述
-        if (null != music) {
-            music.setTitle(musicTitle);
-            // 如果作者不为""，将描述设置为作者
-            if (!"".equals(musicAuthor))
-                music.setDescription(musicAuthor);
-            else
-                music.setDescription("来自百度音乐");
-        }
-        return music;
+        return parseMusic(inputStream);
     }
 
     /**
@@ -88,14 +110,14 @@ public class BaiduMusicServiceApi {
      * 解析音乐参数
      * 
      * @param inputStream 百度音乐搜索API返回的输入流
-     * @return Music
+     * @return [普通品质链接, 高品质链接]
      */
     @SuppressWarnings("unchecked")
-    private static WxMpXmlOutMusicMessage parseMusic(InputStream inputStream) {
+    private static String[] parseMusic(InputStream inputStream) {
         if (null == inputStream) {
             return null;
         }
-        WxMpXmlOutMusicMessage music = WxMpXmlOutMessage.MUSIC().build();
+        String[] music = new String[2];
         try {
             // 使用dom4j解析xml字符串
             SAXReader reader = new SAXReader();
@@ -136,9 +158,9 @@ public class BaiduMusicServiceApi {
                                 + durlDecode.substring(0, durlDecode.lastIndexOf("&"));
                 }
                 // 设置普通品质音乐链接
-                music.setMusicUrl(url);
+                music[0] = url;
                 // 设置高品质音乐链接
-                music.setHqMusicUrl(durl);
+                music[1] = durl;
             }
         } catch (Exception e) {
             LogUtil.error(LOG, "解析百度音乐参数异常", e);
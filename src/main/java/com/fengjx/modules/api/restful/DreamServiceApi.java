@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.api.restful;
 
+import com.fengjx.commons.plugin.cache.memory.LookupCache;
 import com.fengjx.commons.utils.HttpUtil;
 import com.fengjx.commons.utils.LogUtil;
 
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 周公解梦
@@ -23,6 +25,11 @@ public class DreamServiceApi {
 
     private static final Logger LOG = LoggerFactory.getLogger(DreamServiceApi.class);
 
+    /**
+     * 解梦结果缓存，结果基本不会变化，缓存1天
+     */
+    private static final LookupCache CACHE = new LookupCache(24 * 60, 1, TimeUnit.MINUTES, 5000);
+
     // 测试
     public static void main(String[] args) {
         System.out.println(explain("鬼"));
@@ -35,17 +42,9 @@ public class DreamServiceApi {
      * @return
      */
     public static String explain(String keyword) {
-        String res = null;
-        // 组装查询地址
-        String requestUrl = "http://api.uihoo.com/dream/dream.http.php?key={KEY}&format=xml";
-        requestUrl = requestUrl.replace("{KEY}", keyword);
-        // 查询并解析结果
+        String res;
         try {
-            // 查询并获取返回结果
-            InputStream inputStream = HttpUtil.httpRequest(requestUrl);
-            if (null != inputStream) {
-                res = parseMsg(inputStream);
-            }
+            res = CACHE.get(keyword, () -> loadExplain(keyword));
             if (null == res) {
                 res = ">_<，暂无相关信息。。。";
             }
@@ -56,6 +55,21 @@ public class DreamServiceApi {
         return res;
     }
 
+    /**
+     * 调用解梦接口
+     *
+     * @param keyword
+     * @return 没有查询结果返回null
+     */
+    private static String loadExplain(String keyword) {
+        // 组装查询地址
+        String requestUrl = "http://api.uihoo.com/dream/dream.http.php?key={KEY}&format=xml";
+        requestUrl = requestUrl.replace("{KEY}", keyword);
+        // 查询并获取返回结果
+        InputStream inputStream = HttpUtil.httpRequest(requestUrl);
+        return null == inputStream ? null : parseMsg(inputStream);
+    }
+
     /**
      * 解析解梦信息
      * 
@@ -2,12 +2,14 @@
 package com.fengjx.modules.api.restful;
 
 import com.alibaba.fastjson.JSON;
+import com.fengjx.commons.plugin.cache.memory.LookupCache;
 import com.fengjx.commons.utils.HttpUtil;
 import com.fengjx.commons.utils.JsonUtil;
 import com.fengjx.modules.api.config.Consts;
 import com.google.common.collect.Maps;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 历史上的今天查询接口
@@ -20,12 +22,19 @@ public class TodayHistoryApi {
 
     private static final String URL = "http://apis.baidu.com/netpopo/todayhistory/todayhistory";
 
+    /**
+     * 查询结果缓存，同一天的数据不会变化
+     */
+    private static final LookupCache CACHE = new LookupCache(24, 1, TimeUnit.HOURS, 400);
+
     public static JSON todayhistory(int month, int day) {
-        Map<String, String> param = Maps.newHashMap();
-        param.put("month", month + "");
-        param.put("day", day + "");
-        param.put("appkey", Consts.Apistore.API_KEY);
-        String resStr = HttpUtil.get(URL, param, Consts.Apistore.API_KEY_MAP);
+        String resStr = CACHE.get(month + "-" + day, () -> {
+            Map<String, String> param = Maps.newHashMap();
+            param.put("month", month + "");
+            param.put("day", day + "");
+            param.put("appkey", Consts.Apistore.API_KEY);
+            return HttpUtil.get(URL, param, Consts.Apistore.API_KEY_MAP);
+        });
         return JsonUtil.getJSONFromString(resStr);
     }
 
@@ -3,6 +3,7 @@ package com.fengjx.modules.api.restful;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.fengjx.commons.plugin.cache.memory.LookupCache;
 import com.fengjx.commons.utils.HttpUtil;
 import com.fengjx.commons.utils.LogUtil;
 import com.fengjx.commons.utils.WebUtil;
@@ -10,6 +11,8 @@ import com.fengjx.commons.utils.WebUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * 天气预报接口
  * 
@@ -26,6 +29,11 @@ public class WeatherServiceApi {
         System.out.println(queryhWeather("广州"));
     }
 
+    /**
+     * 天气查询结果缓存，同一地点30分钟内直接返回缓存结果
+     */
+    private static final LookupCache CACHE = new LookupCache(30, 1, TimeUnit.MINUTES, 2000);
+
     /**
      * 天气查询
      * 
@@ -34,38 +42,48 @@ public class WeatherServiceApi {
      */
     public static String queryhWeather(String location) {
         String res = null;
-        // 组装查询地址
-        String requestUrl = "http://api.map.baidu.com/telematics/v3/weather?location={LOCATION}&output=json&ak=899166509d1c7898bbad044a910bffa0";
-        // 查询并解析结果
         try {
-            requestUrl = requestUrl.replace("{LOCATION}", WebUtil.urlEncode(location));
-            // 查询并获取返回结果
-            String json = HttpUtil.get(requestUrl);
-            LogUtil.info(LOG, "天气查询 json result {} " + json);
-            JSONObject jsonObject = JSONObject.parseObject(json);
-            // 取出天气情况
-            if (null != jsonObject && "0".equals(jsonObject.getString("error"))) {
-                String cityName = jsonObject.getJSONArray("results").getJSONObject(0)
-                        .getString("currentCity");
-                JSONArray jsonArray = jsonObject.getJSONArray("results").getJSONObject(0)
-                        .getJSONArray("weather_data");
-                res = cityName + "天气情况\r\n";
-                for (int i = 0; i < jsonArray.size() && i < 5; i++) {
-                    JSONObject object = jsonArray.getJSONObject(i);
-                    res += "\r\n时间：" + object.getString("date");
-                    res += "\r\n天气状况：" + object.getString("weather");
-                    res += "\r\n风力：" + object.getString("wind");
-                    res += "\r\n温度：" + object.getString("temperature");
-                    res += "\r\n==============";
-                }
-            }
-            if (null == res) {
-                res = "龙王休息了，请稍后再试。。。";
-            }
+            res = CACHE.get(location, () -> loadWeather(location));
         } catch (Exception e) {
-            res = "龙王休息了，请稍后再试。。。";
             LogUtil.error(LOG, "调用天气查询接口异常", e);
         }
+        if (null == res) {
+            res = "龙王休息了，请稍后再试。。。";
+        }
+        return res;
+    }
+
+    /**
+     * 调用天气接口
+     *
+     * @param location 地点或者经纬度
+     * @return 没有查询结果返回null
+     */
+    private static String loadWeather(String location) {
+        String res = null;
+        // 组装查询地址
+        String requestUrl = "http://api.map.baidu.com/telematics/v3/weather?location={LOCATION}&output=json&ak=899166509d1c7898bbad044a910bffa0";
+        requestUrl = requestUrl.replace("{LOCATION}", WebUtil.urlEncode(location));
+        // 查询并获取返回结果
+        String json = HttpUtil.get(requestUrl);
+        LogUtil.info(LOG, "天气查询 json result {} " + json);
+        JSONObject jsonObject = JSONObject.parseObject(json);
+        // 取出天气情况
+        if (null != jsonObject && "0".equals(jsonObject.getString("error"))) {
+            String cityName = jsonObject.getJSONArray("results").getJSONObject(0)
+                    .getString("currentCity");
+            JSONArray jsonArray = jsonObject.getJSONArray("results").getJSONObject(0)
+                    .getJSONArray("weather_data");
+            res = cityName + "天气情况\r\n";
+            for (int i = 0; i < jsonArray.size() && i < 5; i++) {
+                JSONObject object = jsonArray.getJSONObject(i);
+                res += "\r\n时间：" + object.getString("date");
+                res += "\r\n天气状况：" + object.getString("weather");
+                res += "\r\n风力：" + object.getString("wind");
+                res += "\r\n温度：" + object.getString("temperature");
+                res += "\r\n==============";
+            }
+        }
         return res;
     }
 
@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.common.controller;
 
+import com.fengjx.commons.plugin.cache.CacheWarmUpPlugin;
 import com.fengjx.commons.system.exception.MyException;
 import com.fengjx.commons.system.exception.MyRuntimeException;
 import com.fengjx.commons.utils.LogUtil;
@@ -11,12 +12,14 @@ import com.google.common.collect.Maps;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
 
 /**
@@ -29,6 +32,24 @@ public class CommonController extends BaseController {
 
     private static final Logger LOG = LoggerFactory.getLogger(CommonController.class);
 
+    @Autowired
+    private CacheWarmUpPlugin cacheWarmUpPlugin;
+
+    /**
+     * 就绪检查，缓存预热完成（或超时）前返回503，负载均衡以此判断是否转发请求
+     *
+     * @param response
+     * @return
+     */
+    @RequestMapping("/ready")
+    @ResponseBody
+    public Map<String, Object> ready(HttpServletResponse response) {
+        if (!cacheWarmUpPlugin.isReady()) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        }
+        return cacheWarmUpPlugin.getStatus();
+    }
+
     @RequestMapping("/error")
     public String error(HttpServletRequest request) {
         String forward = "errorview";
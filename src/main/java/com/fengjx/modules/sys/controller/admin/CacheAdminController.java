@@ -0,0 +1,58 @@
+package com.fengjx.modules.sys.controller.admin;
+
+import com.fengjx.modules.common.controller.MyController;
+import com.fengjx.modules.sys.service.CacheMonitorService;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * 缓存管理
+ * <p>
+ * 操作的是整个进程的缓存（所有公众号），只授权给系统管理员（sys_cache_view、sys_cache_edit）
+ *
+ * @author fengjx.
+ * @date：2016/3/25
+ */
+@Controller
+@RequestMapping("${adminPath}/sys/cache")
+public class CacheAdminController extends MyController {
+
+    @Autowired
+    private CacheMonitorService cacheMonitorService;
+
+    /**
+     * 缓存统计，不传name时返回所有缓存
+     *
+     * @param name 缓存名称
+     * @param heap 是否计算堆内存占用
+     */
+    @RequestMapping("stats")
+    @RequiresPermissions("sys_cache_view")
+    @ResponseBody
+    public Object stats(String name, boolean heap) {
+        if (StringUtils.isBlank(name)) {
+            return cacheMonitorService.getStats();
+        }
+        return cacheMonitorService.getStats(name, heap);
+    }
+
+    @RequestMapping("clear")
+    @RequiresPermissions("sys_cache_edit")
+    @ResponseBody
+    public String clear(String name) {
+        return cacheMonitorService.clear(name) ? retSuccess() : retFail("缓存不存在：" + name);
+    }
+
+    @RequestMapping("warm")
+    @RequiresPermissions("sys_cache_edit")
+    @ResponseBody
+    public String warm(String name) {
+        return cacheMonitorService.warm(name) ? retSuccess() : retFail("缓存没有预热实现：" + name);
+    }
+
+}
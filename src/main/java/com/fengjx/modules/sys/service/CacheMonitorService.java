@@ -0,0 +1,207 @@
+package com.fengjx.modules.sys.service;
+
+import com.fengjx.commons.plugin.cache.CacheFactory;
+import com.fengjx.commons.plugin.cache.CacheWarmer;
+import com.fengjx.commons.plugin.cache.SimpleCache;
+import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
+import com.fengjx.commons.plugin.cache.memory.MemoryCache;
+import com.fengjx.commons.plugin.cache.redis.TwoLevelCache;
+import com.fengjx.commons.plugin.db.Config;
+import com.fengjx.commons.plugin.db.TableMappingPlugin;
+import com.fengjx.commons.plugin.db.dialect.SqlCache;
+import com.fengjx.commons.utils.JsonUtil;
+import com.fengjx.commons.utils.LogUtil;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Statistics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存监控
+ * <p>
+ * 统计ehcache缓存（含两级缓存）、内存缓存（{@link CacheFactory}）和sql缓存的命中率、加载耗时、淘汰次数、条数，
+ * 通过后台管理和JMX（ttwx:type=Cache,name=cacheMonitor）查看，并可以按缓存名称清空或预热。
+ * <p>
+ * ehcache缓存需在ehcache.xml中配置statistics="true"才有命中、淘汰统计；
+ * 堆内存占用需要遍历缓存计算，只在查看单个缓存时计算。
+ *
+ * @author fengjx.
+ * @date：2016/3/25
+ */
+@Component
+@ManagedResource(objectName = "ttwx:type=Cache,name=cacheMonitor", description = "缓存监控")
+public class CacheMonitorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheMonitorService.class);
+
+    public static final String SQL_CACHE = "sqlCache";
+
+    @Autowired
+    private TableMappingPlugin tableMappingPlugin;
+
+    @Autowired(required = false)
+    private List<CacheWarmer> warmers = Collections.emptyList();
+
+    /**
+     * 缓存名称
+     */
+    @ManagedAttribute(description = "缓存名称")
+    public List<String> getCacheNames() {
+        List<String> names = new ArrayList<>();
+        CacheManager cacheManager = EhCacheUtil.getCacheManager();
+        if (null != cacheManager) {
+            Collections.addAll(names, cacheManager.getCacheNames());
+        }
+        for (String name : CacheFactory.getCaches().keySet()) {
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+        }
+        if (null != getSqlCache()) {
+            names.add(SQL_CACHE);
+        }
+        return names;
+    }
+
+    /**
+     * 所有缓存的统计，不计算堆内存占用
+     */
+    public List<Map<String, Object>> getStats() {
+        List<Map<String, Object>> res = new ArrayList<>();
+        for (String name : getCacheNames()) {
+            res.add(getStats(name, false));
+        }
+        return res;
+    }
+
+    /**
+     * 单个缓存的统计
+     *
+     * @param name 缓存名称
+     * @param heap 是否计算堆内存占用（遍历缓存，缓存较大时较慢）
+     * @return 缓存不存在时返回null
+     */
+    public Map<String, Object> getStats(String name, boolean heap) {
+        if (SQL_CACHE.equals(name)) {
+            SqlCache sqlCache = getSqlCache();
+            return null == sqlCache ? null : stats(name, "sql", sqlCache.getStats());
+        }
+        CacheManager cacheManager = EhCacheUtil.getCacheManager();
+        Cache cache = null == cacheManager ? null : cacheManager.getCache(name);
+        if (null != cache) {
+            return ehcacheStats(cache, heap);
+        }
+        SimpleCache simpleCache = CacheFactory.getSimpleCache(name);
+        if (simpleCache instanceof MemoryCache) {
+            return stats(name, "memory", ((MemoryCache) simpleCache).getStats());
+        }
+        return null;
+    }
+
+    @ManagedOperation(description = "缓存统计（json）")
+    public String stats(String name) {
+        return JsonUtil.toJson(null == name || name.isEmpty() ? getStats() : getStats(name, true));
+    }
+
+    /**
+     * 清空缓存，两级缓存会通知所有节点
+     *
+     * @return 缓存不存在时返回false
+     */
+    @ManagedOperation(description = "清空缓存")
+    public boolean clear(String name) {
+        boolean res = true;
+        if (SQL_CACHE.equals(name) && null != getSqlCache()) {
+            getSqlCache().clear();
+        } else if (null != EhCacheUtil.getCacheManager()
+                && EhCacheUtil.getCacheManager().cacheExists(name)) {
+            EhCacheUtil.removeAll(name);
+        } else if (null != CacheFactory.getSimpleCache(name)) {
+            CacheFactory.getSimpleCache(name).removeAll();
+        } else {
+            res = false;
+        }
+        LogUtil.info(LOG, "清空缓存" + name + "：" + res);
+        return res;
+    }
+
+    /**
+     * 预热缓存，执行该缓存的所有{@link CacheWarmer}
+     *
+     * @return 没有预热实现时返回false
+     */
+    @ManagedOperation(description = "预热缓存")
+    public boolean warm(String name) {
+        boolean res = false;
+        for (CacheWarmer warmer : warmers) {
+            if (warmer.getCacheName().equals(name)) {
+                long start = System.currentTimeMillis();
+                warmer.warm();
+                LogUtil.info(LOG, "预热缓存" + name + "（" + warmer.getClass().getSimpleName()
+                        + "）耗时" + (System.currentTimeMillis() - start) + "ms");
+                res = true;
+            }
+        }
+        return res;
+    }
+
+    private Map<String, Object> ehcacheStats(Cache cache, boolean heap) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        SimpleCache distributed = EhCacheUtil.getDistributed(cache.getName());
+        res.put("name", cache.getName());
+        if (distributed instanceof TwoLevelCache) {
+            // 两级缓存不使用ehcache，只有本地条数和加载统计
+            res.put("type", "twoLevel");
+            res.put("size", ((TwoLevelCache) distributed).localSize());
+        } else {
+            res.put("type", "ehcache");
+            res.put("statisticsEnabled", cache.isStatisticsEnabled());
+            if (cache.isStatisticsEnabled()) {
+                Statistics statistics = cache.getStatistics();
+                long hits = statistics.getCacheHits();
+                long requests = hits + statistics.getCacheMisses();
+                res.put("hitCount", hits);
+                res.put("missCount", statistics.getCacheMisses());
+                res.put("hitRate", requests == 0 ? 1.0 : (double) hits / requests);
+                res.put("evictionCount", statistics.getEvictionCount());
+            }
+            res.put("size", cache.getSize());
+            res.put("memoryStoreSize", cache.getMemoryStoreSize());
+            res.put("diskStoreSize", cache.getDiskStoreSize());
+            res.put("maxEntriesLocalHeap", cache.getCacheConfiguration().getMaxEntriesLocalHeap());
+            if (heap) {
+                res.put("heapBytes", cache.calculateInMemorySize());
+            }
+        }
+        res.putAll(EhCacheUtil.getLoadStats(cache.getName()).toMap());
+        return res;
+    }
+
+    private static Map<String, Object> stats(String name, String type, Map<String, Object> stats) {
+        Map<String, Object> res = new LinkedHashMap<>();
+        res.put("name", name);
+        res.put("type", type);
+        res.putAll(stats);
+        return res;
+    }
+
+    private SqlCache getSqlCache() {
+        Config config = tableMappingPlugin.getConfig();
+        return null == config ? null : config.getDialect().getSqlCache();
+    }
+
+}
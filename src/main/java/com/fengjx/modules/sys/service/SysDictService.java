@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.sys.service;
 
+import com.fengjx.commons.plugin.cache.CacheWarmer;
 import com.fengjx.commons.plugin.cache.IDataLoader;
 import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
 import com.fengjx.commons.plugin.db.Model;
@@ -27,7 +28,7 @@ import java.util.Map;
  * Autu Generated .
  */
 @Component
-public class SysDictService extends Model<SysDict> {
+public class SysDictService extends Model<SysDict> implements CacheWarmer {
 
     public static final String DICT_MAP = "dict_map";
 
@@ -160,4 +161,17 @@ public class SysDictService extends Model<SysDict> {
         return sql.toString();
     }
 
+    @Override
+    public String getCacheName() {
+        return AppConfig.EhcacheName.DICT_CACHE;
+    }
+
+    /**
+     * 预热字典数据
+     */
+    @Override
+    public void warm() {
+        dictMapList();
+        jsTemplate();
+    }
 }
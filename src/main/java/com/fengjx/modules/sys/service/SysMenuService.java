@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.sys.service;
 
+import com.fengjx.commons.plugin.cache.CacheWarmer;
 import com.fengjx.commons.plugin.cache.IDataLoader;
 import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
 import com.fengjx.commons.plugin.db.Model;
@@ -24,7 +25,7 @@ import java.util.Map;
  * Autu Generated .
  */
 @Component
-public class SysMenuService extends Model<SysMenu> {
+public class SysMenuService extends Model<SysMenu> implements CacheWarmer {
 
     private static final String TREE_MENU_CACHE = "listTreeMenu";
 
@@ -223,4 +224,16 @@ public class SysMenuService extends Model<SysMenu> {
                 });
     }
 
+    @Override
+    public String getCacheName() {
+        return AppConfig.EhcacheName.SYS_CACHE;
+    }
+
+    /**
+     * 预热菜单树
+     */
+    @Override
+    public void warm() {
+        listTreeMenu();
+    }
 }
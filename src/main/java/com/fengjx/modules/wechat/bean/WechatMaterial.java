@@ -7,7 +7,7 @@ import com.fengjx.commons.plugin.db.annotation.Mapper;
 /**
  * Autu Generated, do not modify this file.
  */
-@Mapper(table="wechat_material", id = "id")
+@Mapper(table="wechat_material", id = "id", compress = {"xml_data"})
 @SuppressWarnings("serial")
 public class WechatMaterial extends BaseBean {
 
@@ -7,7 +7,8 @@ import com.fengjx.commons.plugin.db.annotation.Mapper;
 /**
  * Autu Generated, do not modify this file.
  */
-@Mapper(table="wechat_req_msg_log", id = "id")
+@Mapper(table="wechat_req_msg_log", id = "id", compress = {"req_xml", "resp_xml"},
+        lazy = {"resp_xml"})
 @SuppressWarnings("serial")
 public class WechatReqMsgLog extends BaseBean {
 
@@ -3,6 +3,7 @@ package com.fengjx.modules.wechat.controller.admin;
 
 import com.fengjx.commons.utils.WebUtil;
 import com.fengjx.modules.common.controller.MyController;
+import com.fengjx.modules.wechat.bean.WechatReqMsgLog;
 import com.fengjx.modules.wechat.service.WechatReqMsgLogService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -35,4 +36,23 @@ public class ReqMsglogController extends MyController {
         return msgLogService.pageList(WebUtil.getRequestParams(request), getLoginSysUserId());
     }
 
+    /**
+     * 日志详情，列表不返回resp_xml，查看时单独加载
+     */
+    @RequestMapping(value = "/detail")
+    @ResponseBody
+    public Object detail(String id) {
+        WechatReqMsgLog log = msgLogService.getDetail(id, getLoginSysUserId());
+        return null == log ? null : log._getColumns();
+    }
+
+    /**
+     * 游标分页，参数cursor为上一次返回的nextCursor
+     */
+    @RequestMapping(value = "/scrollList")
+    @ResponseBody
+    public Object scrollList(HttpServletRequest request) {
+        return msgLogService.scrollList(WebUtil.getRequestParams(request), getLoginSysUserId());
+    }
+
 }
@@ -6,12 +6,14 @@ import com.fengjx.commons.utils.DateUtils;
 import com.fengjx.commons.utils.LogUtil;
 import com.fengjx.modules.common.constants.AppConfig;
 import com.fengjx.modules.wechat.bean.WechatReqMsgLog;
+import com.fengjx.modules.wechat.process.bean.RequestBody;
 import com.fengjx.modules.wechat.process.bean.WechatContext;
-import com.fengjx.modules.wechat.process.utils.WxMpUtil;
+import com.fengjx.modules.wechat.process.log.ReqMsgLogWriter;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpCryptContext;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceRegistry;
+import com.fengjx.modules.wechat.process.utils.XmlMessageParser;
 import com.fengjx.modules.wechat.service.WechatPublicAccountService;
-import com.fengjx.modules.wechat.service.WechatReqMsgLogService;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,10 +21,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.ModelAndView;
 
-import java.io.ByteArrayInputStream;
 import java.util.Date;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -31,19 +30,16 @@ import me.chanjar.weixin.mp.api.WxMpConfigStorage;
 import me.chanjar.weixin.mp.api.WxMpService;
 import me.chanjar.weixin.mp.bean.WxMpXmlMessage;
 import me.chanjar.weixin.mp.bean.WxMpXmlOutMessage;
-import me.chanjar.weixin.mp.util.xml.XStreamTransformer;
 
 public class WechatInterceptor implements HandlerInterceptor {
 
     private static final Logger LOG = LoggerFactory.getLogger(WechatInterceptor.class);
 
-    private static final ExecutorService executorService = Executors.newFixedThreadPool(3);
-
     @Autowired
     private WechatPublicAccountService publicAccountService;
 
     @Autowired
-    private WechatReqMsgLogService msgLogService;
+    private ReqMsgLogWriter msgLogWriter;
 
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
             Object handler, Exception e) throws Exception {
@@ -58,13 +54,13 @@ public class WechatInterceptor implements HandlerInterceptor {
         log.setMsgId(inMessage.getMsgId());
         log.setInTime(new Date(WechatContext.getRequestTime()));
         log.setPublicAccountId(WechatContext.getInMessageRecord().getStr("id"));
-        log.setReqXml(XStreamTransformer.toXml(WxMpXmlMessage.class, WechatContext.getInMessage()));
+        // 直接使用请求原文（aes消息为解密后的明文），不再重新序列化
+        log.setReqXml(WechatContext.getRequestBody().getXml());
         WxMpXmlOutMessage outMessage = WechatContext.getOutMessage();
         log.setRespXml(outMessage == null ? "" : outMessage.toXml());
         log.setRespTime(new Date());
-        executorService.execute(() -> {
-            msgLogService.save(log);
-        });
+        // 异步批量写入，队列满时丢弃
+        msgLogWriter.submit(log);
         WechatContext.removeAll();
     }
 
@@ -81,62 +77,66 @@ public class WechatInterceptor implements HandlerInterceptor {
      */
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
             Object handler) throws Exception {
-        // 在request.getParameter之后读取InputStream会导致流没有读取完整，所以这里临时保存
-        ByteArrayInputStream in = new ByteArrayInputStream(
-                IOUtils.toByteArray(request.getInputStream()));
-        try {
-            String ticket = request.getParameter("ticket");
-            if (StringUtils.isBlank(ticket)) {
-                LogUtil.info(LOG, "请求无效，ticket为空");
+        // 在request.getParameter之后读取InputStream会导致流没有读取完整，所以这里先读到当前线程的缓冲区
+        RequestBody body = RequestBody.read(request.getInputStream());
+        String ticket = request.getParameter("ticket");
+        if (StringUtils.isBlank(ticket)) {
+            LogUtil.info(LOG, "请求无效，ticket为空");
+            return false;
+        }
+        // 解密
+        String signature = request.getParameter("signature");
+        String nonce = request.getParameter("nonce");
+        String timestamp = request.getParameter("timestamp");
+        // 将公众号配置信息放到微信请求上下文
+        Record record = publicAccountService.findByTicket(ticket);
+        if (record.isEmpty()) {
+            LogUtil.info(LOG, "ticket无效，找不到对应公众号信息");
+            return false;
+        }
+        WechatContext.setRequestTime(DateUtils.currentTimeMillis());
+        WechatContext.setInMessageRecord(record);
+        WxMpConfigStorage wxMpConfig = WxMpServiceRegistry.getConfigStorage(record);
+        // 非测试环境做签名校验
+        if (!AppConfig.isTest()) {
+            LogUtil.debug(LOG, "进入签名校验");
+            WxMpService wxMpService = WxMpServiceRegistry.getWxMpService(record);
+            if (!wxMpService.checkSignature(timestamp, nonce, signature)) {
+                // 消息签名不正确，说明不是公众平台发过来的消息
+                LogUtil.error(LOG, "消息签名不正确，非法请求");
                 return false;
             }
-            // 解密
-            String signature = request.getParameter("signature");
-            String nonce = request.getParameter("nonce");
-            String timestamp = request.getParameter("timestamp");
-            // 将公众号配置信息放到微信请求上下文
-            Record record = publicAccountService.findByTicket(ticket);
-            if (record.isEmpty()) {
-                LogUtil.info(LOG, "ticket无效，找不到对应公众号信息");
+        }
+        String echostr = request.getParameter("echostr");
+        if (StringUtils.isNotBlank(echostr)) {
+            // 说明是一个仅仅用来验证的请求
+            return true;
+        }
+        String encryptType = StringUtils.isBlank(request.getParameter("encrypt_type")) ? "raw"
+                : request.getParameter("encrypt_type");
+        WxMpXmlMessage inMessage = null;
+        if ("raw".equals(encryptType)) {
+            // 明文传输的消息
+            inMessage = XmlMessageParser.parse(body);
+        } else if ("aes".equals(encryptType)) {
+            // 是aes加密的消息
+            String msgSignature = request.getParameter("msg_signature");
+            WxMpCryptContext cryptContext = WxMpServiceRegistry.getCryptContext(record);
+            if (null == cryptContext) {
+                LogUtil.error(LOG, "公众号未配置encodingAESKey或配置错误，无法解密消息");
                 return false;
             }
-            WechatContext.setRequestTime(DateUtils.currentTimeMillis());
-            WechatContext.setInMessageRecord(record);
-            WxMpConfigStorage wxMpConfig = WxMpUtil.buildConfigStorage(record);
-            // 非测试环境做签名校验
-            if (!AppConfig.isTest()) {
-                LogUtil.debug(LOG, "进入签名校验");
-                WxMpService wxMpService = WxMpUtil.getWxMpServiceByConfig(wxMpConfig);
-                if (!wxMpService.checkSignature(timestamp, nonce, signature)) {
-                    // 消息签名不正确，说明不是公众平台发过来的消息
-                    LogUtil.error(LOG, "消息签名不正确，非法请求");
-                    return false;
-                }
-            }
-            String echostr = request.getParameter("echostr");
-            if (StringUtils.isNotBlank(echostr)) {
-                // 说明是一个仅仅用来验证的请求
-                return true;
-            }
-            String encryptType = StringUtils.isBlank(request.getParameter("encrypt_type")) ? "raw"
-                    : request.getParameter("encrypt_type");
-            WxMpXmlMessage inMessage = null;
-            if ("raw".equals(encryptType)) {
-                // 明文传输的消息
-                inMessage = WxMpXmlMessage.fromXml(in);
-            } else if ("aes".equals(encryptType)) {
-                // 是aes加密的消息
-                String msgSignature = request.getParameter("msg_signature");
-                inMessage = WxMpXmlMessage.fromEncryptedXml(in, wxMpConfig, timestamp, nonce,
-                        msgSignature);
-            }
-            WechatContext.setInMessage(inMessage);
-            WechatContext.setWxMpConfigStorage(wxMpConfig);
-            WechatContext.setEncryptType(encryptType);
-            return true;
-        } finally {
-            IOUtils.closeQuietly(in);
+            String plainXml = cryptContext.decrypt(msgSignature, timestamp, nonce,
+                    body.toString());
+            body.setPlainXml(plainXml);
+            WechatContext.setCryptContext(cryptContext);
+            inMessage = XmlMessageParser.parse(plainXml);
         }
+        WechatContext.setInMessage(inMessage);
+        WechatContext.setRequestBody(body);
+        WechatContext.setWxMpConfigStorage(wxMpConfig);
+        WechatContext.setEncryptType(encryptType);
+        return true;
     }
 
 }
@@ -0,0 +1,112 @@
+package com.fengjx.modules.wechat.process;
+
+import com.fengjx.commons.utils.LogUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import me.chanjar.weixin.mp.bean.WxMpXmlMessage;
+
+/**
+ * 微信消息排重
+ * <p>
+ * 微信服务器在5秒内收不到响应会断开连接并重发，最多重试三次。
+ * 普通消息按MsgId、事件按FromUserName+CreateTime排重：第一次请求正常处理，
+ * 重发的请求等待第一次处理结果（处理中）或直接返回已缓存的结果（已完成），不再重复执行业务逻辑。
+ *
+ * @author fengjx.
+ * @date：2016/3/17
+ */
+public class MsgDedupCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MsgDedupCache.class);
+
+    // 结果保留时间，需覆盖微信重试周期
+    private long expireSeconds = 30;
+
+    // 重发请求等待第一次处理结果的最长时间，需小于微信5秒超时
+    private long waitMillis = 4500;
+
+    private long maxSize = 100000;
+
+    private Cache<String, CompletableFuture<String>> results;
+
+    public void init() {
+        results = CacheBuilder.newBuilder().expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .maximumSize(maxSize).build();
+    }
+
+    /**
+     * 处理消息，重复消息返回第一次的处理结果
+     *
+     * @param inMessage 微信消息
+     * @param processor 消息处理
+     * @return 响应报文
+     */
+    public String process(WxMpXmlMessage inMessage, Supplier<String> processor) {
+        String key = buildKey(inMessage);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> exist = results.asMap().putIfAbsent(key, future);
+        if (null != exist) {
+            LogUtil.info(LOG, "重复消息[" + key + "]，返回第一次处理结果");
+            return await(key, exist);
+        }
+        try {
+            String res = processor.get();
+            future.complete(res);
+            return res;
+        } catch (RuntimeException e) {
+            // 处理失败不缓存，允许重试
+            results.invalidate(key);
+            future.complete("");
+            throw e;
+        }
+    }
+
+    private String await(String key, CompletableFuture<String> future) {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LogUtil.warn(LOG, "重复消息[" + key + "]等待第一次处理结果超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LogUtil.error(LOG, "重复消息[" + key + "]第一次处理失败", e);
+        }
+        return "";
+    }
+
+    /**
+     * 排重key：公众号 + MsgId（事件消息没有MsgId，使用FromUserName + CreateTime）
+     */
+    private String buildKey(WxMpXmlMessage inMessage) {
+        StringBuilder key = new StringBuilder(inMessage.getToUserName()).append(':');
+        if (null != inMessage.getMsgId()) {
+            key.append(inMessage.getMsgId());
+        } else {
+            key.append(inMessage.getFromUserName()).append(':').append(inMessage.getCreateTime());
+        }
+        return key.toString();
+    }
+
+    public void setExpireSeconds(long expireSeconds) {
+        this.expireSeconds = expireSeconds;
+    }
+
+    public void setWaitMillis(long waitMillis) {
+        this.waitMillis = waitMillis;
+    }
+
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
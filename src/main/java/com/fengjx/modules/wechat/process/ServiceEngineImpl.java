@@ -2,17 +2,28 @@
 package com.fengjx.modules.wechat.process;
 
 import com.fengjx.commons.plugin.db.Record;
+import com.fengjx.commons.system.exception.MyRuntimeException;
 import com.fengjx.commons.utils.LogUtil;
 import com.fengjx.modules.wechat.constants.WechatConst;
 import com.fengjx.modules.wechat.process.bean.WechatContext;
 import com.fengjx.modules.wechat.process.executor.ServiceExecutorFactory;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceRegistry;
+import com.fengjx.modules.wechat.process.utils.WxMpUtil;
+import me.chanjar.weixin.common.session.WxSession;
 import me.chanjar.weixin.mp.api.WxMpConfigStorage;
+import me.chanjar.weixin.mp.bean.WxMpCustomMessage;
 import me.chanjar.weixin.mp.bean.WxMpXmlMessage;
 import me.chanjar.weixin.mp.bean.WxMpXmlOutMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * 微信消息核心处理类
  * 
@@ -29,6 +40,22 @@ public class ServiceEngineImpl implements ServiceEngine {
     @Autowired
     private ServiceExecutorFactory executorFactory;
 
+    /**
+     * 消息排重
+     */
+    @Autowired
+    private MsgDedupCache msgDedupCache;
+
+    /**
+     * 消息处理线程池
+     */
+    private Executor replyExecutor;
+
+    /**
+     * 被动回复最长等待时间（微信5秒超时）
+     */
+    private long replyDeadlineMillis = 4000;
+
     /**
      * 处理微信发来的请求
      * 
@@ -36,6 +63,23 @@ public class ServiceEngineImpl implements ServiceEngine {
      */
     @Override
     public String processRequest() {
+        WxMpXmlMessage inMessage = WechatContext.getInMessage();
+        if (null == inMessage) {
+            return "";
+        }
+        // 微信重发的消息不再重复处理，处理失败时不缓存结果，重发的消息重新处理
+        try {
+            return msgDedupCache.process(inMessage, this::doProcess);
+        } catch (RuntimeException e) {
+            LogUtil.error(LOG, "处理微信请求出现异常", e);
+            return ""; // 返回空字符串，微信将不做处理，且不再消息重发
+        }
+    }
+
+    /**
+     * 处理消息，异常抛给排重缓存
+     */
+    private String doProcess() {
         // 微信发送的参数
         ServiceExecutor executor;
         Record accountRecord = WechatContext.getInMessageRecord();
@@ -54,14 +98,64 @@ public class ServiceEngineImpl implements ServiceEngine {
                 LogUtil.warn(LOG, "ToUserName[" + inMessage.getToUserName() + "]无效，返回空不做响应");
                 return "";
             }
-            WxMpXmlOutMessage outMessage = executor.execute(inMessage, accountRecord, wxMpConfig,
-                    WechatContext.getWxsession());
+            WxMpXmlOutMessage outMessage = executeWithDeadline(executor, inMessage, accountRecord,
+                    wxMpConfig);
             // 当道请求上下文里，使用aop记录日志需要用到
             WechatContext.setOutMessage(outMessage);
             return processResult(outMessage, inMessage);
+        } catch (RuntimeException e) {
+            throw e;
         } catch (Exception e) {
-            LogUtil.error(LOG, "处理微信请求出现异常", e);
-            return ""; // 返回空字符串，微信将不做处理，且不再消息重发
+            throw new MyRuntimeException(e);
+        }
+    }
+
+    /**
+     * 在线程池中执行消息处理，超过replyDeadlineMillis未完成则先返回null（不做被动回复），处理完成后通过客服接口发送
+     */
+    private WxMpXmlOutMessage executeWithDeadline(ServiceExecutor executor,
+            WxMpXmlMessage inMessage, Record accountRecord, WxMpConfigStorage wxMpConfig)
+            throws Exception {
+        WxSession session = WechatContext.getWxsession();
+        WechatContext.Snapshot snapshot = WechatContext.snapshot();
+        CompletableFuture<WxMpXmlOutMessage> future = CompletableFuture.supplyAsync(
+                snapshot.wrap(() -> executor.execute(inMessage, accountRecord, wxMpConfig,
+                        session)), replyExecutor);
+        try {
+            return future.get(replyDeadlineMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LogUtil.warn(LOG, "消息处理超过" + replyDeadlineMillis + "ms，改用客服消息回复fromUserName="
+                    + inMessage.getFromUserName());
+            future.whenComplete((outMessage, ex) -> sendCustomMessage(outMessage, ex, inMessage,
+                    accountRecord));
+            return null;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * 超时的消息通过客服接口回复
+     */
+    private void sendCustomMessage(WxMpXmlOutMessage outMessage, Throwable ex,
+            WxMpXmlMessage inMessage, Record accountRecord) {
+        if (null != ex) {
+            LogUtil.error(LOG, "处理微信请求出现异常", ex);
+            return;
+        }
+        if (null == outMessage) {
+            return;
+        }
+        try {
+            WxMpCustomMessage message = WxMpUtil.toCustomMessage(outMessage,
+                    inMessage.getFromUserName());
+            if (null == message) {
+                LogUtil.warn(LOG, "消息类型不支持客服接口发送：" + outMessage.getMsgType());
+                return;
+            }
+            WxMpServiceRegistry.getWxMpService(accountRecord).customMessageSend(message);
+        } catch (Exception e) {
+            LogUtil.error(LOG, "发送客服消息失败fromUserName=" + inMessage.getFromUserName(), e);
         }
     }
 
@@ -78,9 +172,18 @@ public class ServiceEngineImpl implements ServiceEngine {
             return outMessage.toXml();
         } else if ("aes".equals(encryptType)) {
             LogUtil.info(LOG, "encryptType is aes");
-            return outMessage.toEncryptedXml(WechatContext.getWxMpConfigStorage());
+            // 使用按公众号缓存的加解密实例
+            return WechatContext.getCryptContext().encrypt(outMessage.toXml());
         }
         LogUtil.info(LOG, "encryptType unknown");
         return "";
     }
+
+    public void setReplyExecutor(Executor replyExecutor) {
+        this.replyExecutor = replyExecutor;
+    }
+
+    public void setReplyDeadlineMillis(long replyDeadlineMillis) {
+        this.replyDeadlineMillis = replyDeadlineMillis;
+    }
 }
@@ -0,0 +1,267 @@
+package com.fengjx.modules.wechat.process.bean;
+
+import com.fengjx.commons.system.exception.MyRuntimeException;
+import com.fengjx.modules.wechat.process.utils.WxMpUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import me.chanjar.weixin.mp.bean.WxMpXmlOutMessage;
+import me.chanjar.weixin.mp.util.xml.XStreamTransformer;
+
+/**
+ * 被动回复消息模板
+ * <p>
+ * 素材xml只解析一次，拆分成固定文本和ToUserName、FromUserName、CreateTime三个占位，
+ * 回复时只需填充占位，不再每次做正则替换和XStream反序列化/序列化。
+ *
+ * @author fengjx.
+ * @date：2016/3/14
+ */
+public final class ReplyTemplate {
+
+    private static final String[] SLOT_NAMES = { "ToUserName", "FromUserName", "CreateTime" };
+
+    private static final int SLOT_TO = 0;
+    private static final int SLOT_FROM = 1;
+    private static final int SLOT_CREATE_TIME = 2;
+
+    // 模板缓存最多条数，素材修改后旧模板按最近最少使用淘汰
+    private static final int MAX_TEMPLATES = 1000;
+
+    /**
+     * 素材模板缓存，key为素材xml内容，规则从磁盘或redis重新读取后仍能命中
+     */
+    private static final Cache<String, ReplyTemplate> TEMPLATES = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TEMPLATES).build();
+
+    private final String msgType;
+
+    private final String xml;
+
+    // 解析后的消息实体，转客服消息时才用到，首次使用时解析
+    private volatile WxMpXmlOutMessage message;
+
+    // 固定文本，segments[i]之后是slots[i]，最后一段之后没有占位
+    private final String[] segments;
+
+    private final int[] slots;
+
+    private final int length;
+
+    private ReplyTemplate(String msgType, String xml, String[] segments, int[] slots) {
+        this.msgType = msgType;
+        this.xml = xml;
+        this.segments = segments;
+        this.slots = slots;
+        int len = 0;
+        for (String segment : segments) {
+            len += segment.length();
+        }
+        this.length = len;
+    }
+
+    /**
+     * 获得素材模板（已解析过的直接返回）
+     *
+     * @param xml 缓存规则中的素材xml
+     * @return
+     */
+    public static ReplyTemplate of(final String xml) {
+        if (StringUtils.isBlank(xml)) {
+            return null;
+        }
+        try {
+            return TEMPLATES.get(xml, () -> compile(xml));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            // compile抛出的运行时异常由guava包装成UncheckedExecutionException
+            throw new MyRuntimeException("解析回复消息模板失败", e.getCause());
+        }
+    }
+
+    /**
+     * 解析回复消息xml
+     *
+     * @param xml
+     * @return
+     */
+    public static ReplyTemplate compile(String xml) {
+        if (StringUtils.isBlank(xml)) {
+            return null;
+        }
+        int root = xml.indexOf("<xml>");
+        if (root < 0) {
+            throw new MyRuntimeException("回复消息格式错误：" + xml);
+        }
+        String msgType = unwrapCdata(elementText(xml, "MsgType"));
+        if (StringUtils.isBlank(msgType)) {
+            throw new MyRuntimeException("msgType unkonwn");
+        }
+        // 缺少的占位节点补到<xml>后面
+        StringBuilder missing = new StringBuilder();
+        for (String name : SLOT_NAMES) {
+            if (elementText(xml, name) == null) {
+                missing.append('<').append(name).append("></").append(name).append('>');
+            }
+        }
+        if (missing.length() > 0) {
+            int pos = root + "<xml>".length();
+            xml = xml.substring(0, pos) + missing + xml.substring(pos);
+        }
+        // 按出现位置拆分
+        int[][] ranges = new int[SLOT_NAMES.length][];
+        for (int i = 0; i < SLOT_NAMES.length; i++) {
+            ranges[i] = contentRange(xml, SLOT_NAMES[i]);
+        }
+        List<String> segments = new ArrayList<>(SLOT_NAMES.length + 1);
+        int[] slots = new int[SLOT_NAMES.length];
+        int pos = 0;
+        for (int n = 0; n < SLOT_NAMES.length; n++) {
+            int next = -1;
+            for (int i = 0; i < ranges.length; i++) {
+                if (ranges[i] != null && (next < 0 || ranges[i][0] < ranges[next][0])) {
+                    next = i;
+                }
+            }
+            segments.add(xml.substring(pos, ranges[next][0]));
+            slots[n] = next;
+            pos = ranges[next][1];
+            ranges[next] = null;
+        }
+        segments.add(xml.substring(pos));
+        return new ReplyTemplate(msgType, xml, segments.toArray(new String[segments.size()]), slots);
+    }
+
+    /**
+     * 创建回复消息
+     *
+     * @return
+     */
+    public WxMpXmlOutMessage newMessage() {
+        TemplateOutMessage message = new TemplateOutMessage(this);
+        message.setMsgType(msgType);
+        message.setCreateTime(System.currentTimeMillis() / 1000L);
+        return message;
+    }
+
+    /**
+     * 填充占位生成xml
+     *
+     * @param toUserName
+     * @param fromUserName
+     * @param createTime 秒
+     * @return
+     */
+    public String render(String toUserName, String fromUserName, Long createTime) {
+        StringBuilder xml = new StringBuilder(length + 128);
+        for (int i = 0; i < slots.length; i++) {
+            xml.append(segments[i]);
+            switch (slots[i]) {
+                case SLOT_TO:
+                    xml.append("<![CDATA[").append(StringUtils.defaultString(toUserName))
+                            .append("]]>");
+                    break;
+                case SLOT_FROM:
+                    xml.append("<![CDATA[").append(StringUtils.defaultString(fromUserName))
+                            .append("]]>");
+                    break;
+                case SLOT_CREATE_TIME:
+                    xml.append(null == createTime ? System.currentTimeMillis() / 1000L : createTime);
+                    break;
+                default:
+                    break;
+            }
+        }
+        xml.append(segments[segments.length - 1]);
+        return xml.toString();
+    }
+
+    public String getMsgType() {
+        return msgType;
+    }
+
+    /**
+     * 模板对应的消息实体（每个模板只解析一次），用于读取消息字段
+     *
+     * @return
+     */
+    public WxMpXmlOutMessage getMessage() {
+        WxMpXmlOutMessage res = message;
+        if (null == res) {
+            res = (WxMpXmlOutMessage) XStreamTransformer
+                    .fromXml(WxMpUtil.getXmlOutMsgType(msgType), xml);
+            message = res;
+        }
+        return res;
+    }
+
+    /**
+     * 基于模板的回复消息返回模板对应的消息实体，其他消息原样返回
+     *
+     * @param outMessage
+     * @return
+     */
+    public static WxMpXmlOutMessage unwrap(WxMpXmlOutMessage outMessage) {
+        if (outMessage instanceof TemplateOutMessage) {
+            return ((TemplateOutMessage) outMessage).template.getMessage();
+        }
+        return outMessage;
+    }
+
+    /**
+     * 节点内容的起止位置
+     */
+    private static int[] contentRange(String xml, String name) {
+        String open = "<" + name + ">";
+        int start = xml.indexOf(open);
+        if (start < 0) {
+            return null;
+        }
+        start += open.length();
+        int end = xml.indexOf("</" + name + ">", start);
+        if (end < 0) {
+            return null;
+        }
+        return new int[] { start, end };
+    }
+
+    private static String elementText(String xml, String name) {
+        int[] range = contentRange(xml, name);
+        return null == range ? null : xml.substring(range[0], range[1]);
+    }
+
+    private static String unwrapCdata(String text) {
+        if (null == text) {
+            return null;
+        }
+        text = text.trim();
+        if (text.startsWith("<![CDATA[") && text.endsWith("]]>")) {
+            return text.substring("<![CDATA[".length(), text.length() - "]]>".length());
+        }
+        return text;
+    }
+
+    /**
+     * 基于模板的回复消息，toXml直接填充模板
+     */
+    private static class TemplateOutMessage extends WxMpXmlOutMessage {
+
+        private final ReplyTemplate template;
+
+        TemplateOutMessage(ReplyTemplate template) {
+            this.template = template;
+        }
+
+        @Override
+        public String toXml() {
+            return template.render(getToUserName(), getFromUserName(), getCreateTime());
+        }
+    }
+
+}
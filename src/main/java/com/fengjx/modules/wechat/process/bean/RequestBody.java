@@ -0,0 +1,103 @@
+package com.fengjx.modules.wechat.process.bean;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 微信请求报文
+ * <p>
+ * 每个线程复用一个缓冲区读取请求体，解析和记录日志都直接使用缓冲区中的原始数据，不再额外复制。
+ * 缓冲区只在当前请求内有效（afterCompletion之后会被下一个请求覆盖）。
+ *
+ * @author fengjx.
+ * @date：2016/3/15
+ */
+public final class RequestBody {
+
+    private static final int INIT_SIZE = 4 * 1024;
+
+    // 超过这个大小的缓冲区用完后不再保留
+    private static final int MAX_POOLED_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<RequestBody> POOL = new ThreadLocal<RequestBody>() {
+        @Override
+        protected RequestBody initialValue() {
+            return new RequestBody();
+        }
+    };
+
+    private byte[] data = new byte[INIT_SIZE];
+
+    private int length;
+
+    // 解密后的明文（aes加密消息）
+    private String plainXml;
+
+    private RequestBody() {
+    }
+
+    /**
+     * 读取请求体到当前线程的缓冲区
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static RequestBody read(InputStream in) throws IOException {
+        RequestBody body = POOL.get();
+        body.reset();
+        int n;
+        while ((n = in.read(body.data, body.length, body.data.length - body.length)) != -1) {
+            body.length += n;
+            if (body.length == body.data.length) {
+                body.data = Arrays.copyOf(body.data, body.data.length << 1);
+            }
+        }
+        return body;
+    }
+
+    private void reset() {
+        if (data.length > MAX_POOLED_SIZE) {
+            data = new byte[INIT_SIZE];
+        }
+        length = 0;
+        plainXml = null;
+    }
+
+    public InputStream getInputStream() {
+        return new ByteArrayInputStream(data, 0, length);
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public void setPlainXml(String plainXml) {
+        this.plainXml = plainXml;
+    }
+
+    /**
+     * 明文xml，用于记录日志
+     *
+     * @return
+     */
+    public String getXml() {
+        if (null != plainXml) {
+            return plainXml;
+        }
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+}
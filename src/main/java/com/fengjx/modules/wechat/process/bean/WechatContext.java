@@ -2,9 +2,12 @@
 package com.fengjx.modules.wechat.process.bean;
 
 import com.fengjx.commons.plugin.db.Record;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpCryptContext;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.function.Supplier;
+
 import me.chanjar.weixin.common.session.StandardSessionManager;
 import me.chanjar.weixin.common.session.WxSession;
 import me.chanjar.weixin.common.session.WxSessionManager;
@@ -36,6 +39,10 @@ public class WechatContext {
 
     private static ThreadLocal<Long> requestTime = new InheritableThreadLocal<>();
 
+    private static ThreadLocal<RequestBody> requestBody = new InheritableThreadLocal<>();
+
+    private static ThreadLocal<WxMpCryptContext> cryptContext = new InheritableThreadLocal<>();
+
     public static WxMpConfigStorage getWxMpConfigStorage() {
         return wxMpConfigStorage.get();
     }
@@ -95,12 +102,101 @@ public class WechatContext {
         WechatContext.requestTime.set(requestTime);
     }
 
+    public static RequestBody getRequestBody() {
+        return requestBody.get();
+    }
+
+    public static void setRequestBody(RequestBody requestBody) {
+        WechatContext.requestBody.set(requestBody);
+    }
+
+    public static WxMpCryptContext getCryptContext() {
+        return cryptContext.get();
+    }
+
+    public static void setCryptContext(WxMpCryptContext cryptContext) {
+        WechatContext.cryptContext.set(cryptContext);
+    }
+
+    /**
+     * 保存当前请求上下文，用于在其他线程中执行消息处理
+     *
+     * @return
+     */
+    public static Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(Thread.currentThread());
+        snapshot.wxMpConfigStorage = getWxMpConfigStorage();
+        snapshot.inMessageRecord = getInMessageRecord();
+        snapshot.encryptType = getEncryptType();
+        snapshot.inMessage = getInMessage();
+        snapshot.requestTime = getRequestTime();
+        snapshot.cryptContext = getCryptContext();
+        return snapshot;
+    }
+
     public static void removeAll() {
         WechatContext.inMessage.remove();
         WechatContext.wxMpConfigStorage.remove();
         WechatContext.inMessageRecord.remove();
         WechatContext.encryptType.remove();
         WechatContext.requestTime.remove();
+        WechatContext.requestBody.remove();
+        WechatContext.cryptContext.remove();
+        WechatContext.outMessage.remove();
+    }
+
+    /**
+     * 请求上下文快照（线程池中的线程不会继承InheritableThreadLocal，需要手动设置）
+     */
+    public static class Snapshot {
+
+        // 创建快照的线程（请求线程）
+        private final Thread owner;
+
+        private WxMpConfigStorage wxMpConfigStorage;
+        private Record inMessageRecord;
+        private String encryptType;
+        private WxMpXmlMessage inMessage;
+        private Long requestTime;
+        private WxMpCryptContext cryptContext;
+
+        private Snapshot(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * 包装在其他线程执行的任务：执行前设置上下文，执行后清除。
+         * <p>
+         * 线程池已满由请求线程直接执行（CALLER_RUNS）时不设置也不清除，否则会清掉请求线程还要使用的上下文。
+         *
+         * @param task
+         * @return
+         */
+        public <T> Supplier<T> wrap(Supplier<T> task) {
+            return () -> {
+                if (Thread.currentThread() == owner) {
+                    return task.get();
+                }
+                attach();
+                try {
+                    return task.get();
+                } finally {
+                    removeAll();
+                }
+            };
+        }
+
+        /**
+         * 设置到当前线程，使用完后需调用{@link WechatContext#removeAll()}
+         */
+        public void attach() {
+            setWxMpConfigStorage(wxMpConfigStorage);
+            setInMessageRecord(inMessageRecord);
+            setEncryptType(encryptType);
+            setInMessage(inMessage);
+            setRequestTime(requestTime);
+            setCryptContext(cryptContext);
+        }
     }
 
 }
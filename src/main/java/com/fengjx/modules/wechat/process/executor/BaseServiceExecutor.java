@@ -8,22 +8,18 @@ import com.fengjx.modules.common.constants.MsgTemplateConstants;
 import com.fengjx.modules.wechat.bean.WechatRespMsgAction;
 import com.fengjx.modules.wechat.process.ServiceExecutor;
 import com.fengjx.modules.wechat.process.ServiceExecutorNameWire;
+import com.fengjx.modules.wechat.process.bean.ReplyTemplate;
 import com.fengjx.modules.wechat.process.bean.WechatContext;
 import com.fengjx.modules.wechat.process.ext.ExtService;
-import com.fengjx.modules.wechat.process.utils.MessageUtil;
-import com.fengjx.modules.wechat.process.utils.WxMpUtil;
 import com.fengjx.modules.wechat.service.WechatMsgTemplateService;
 import com.fengjx.modules.wechat.service.WechatPublicAccountService;
 import com.fengjx.modules.wechat.service.WechatRespMsgActionService;
 import me.chanjar.weixin.mp.bean.WxMpXmlOutMessage;
-import me.chanjar.weixin.mp.util.xml.XStreamTransformer;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.Date;
-
 /**
  * 业务执行器基类
  */
@@ -72,14 +68,15 @@ public abstract class BaseServiceExecutor implements ServiceExecutor, ServiceExe
             // FtlFilenameConstants.WECHAT_DEFAULT_MSG);
             return null;
         }
-        String res = null;
         String actionType = actionRecord.getStr("action_type");
         if (WechatRespMsgAction.ACTION_TYPE_MATERIAL.equals(actionType)) { // 从素材取数据
-            res = actionRecord.getStr("xml_data");
+            // 素材模板随规则缓存，只解析一次
+            ReplyTemplate template = ReplyTemplate.of(actionRecord.getStr("xml_data"));
+            return null == template ? null : template.newMessage();
         } else if (WechatRespMsgAction.ACTION_TYPE_API.equals(actionType)) { // 从接口返回数据
-            res = busiappHandle(actionRecord.getStr("bean_name"));
+            return doAction(busiappHandle(actionRecord.getStr("bean_name")));
         }
-        return doAction(res);
+        return null;
     }
 
     /**
@@ -92,10 +89,7 @@ public abstract class BaseServiceExecutor implements ServiceExecutor, ServiceExe
         if (StringUtils.isBlank(xmlMsg)) {
             return null;
         }
-        xmlMsg = xmlMsg.replaceAll("\\<CreateTime>(.*?)\\</CreateTime>",
-                "<CreateTime><![CDATA[" + new Date().getTime() + "]]></CreateTime>");
-        return (WxMpXmlOutMessage) XStreamTransformer.fromXml(
-                WxMpUtil.getXmlOutMsgType(MessageUtil.parseMsgType(xmlMsg)), xmlMsg);
+        return ReplyTemplate.compile(xmlMsg).newMessage();
         // 替换参数
         // respMessage = MessageUtil.replaceMsgByReg(respMessage,
         // WechatContext.getWechatPostMap());
@@ -0,0 +1,199 @@
+package com.fengjx.modules.wechat.process.log;
+
+import com.fengjx.commons.utils.LogUtil;
+import com.fengjx.modules.wechat.bean.WechatReqMsgLog;
+import com.fengjx.modules.wechat.service.WechatReqMsgLogService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 微信请求日志异步批量写入
+ * <p>
+ * 日志先放入有界队列，由单独的写线程按batchSize或lingerMillis（先到为准）批量insert。
+ * 队列满时丢弃新日志并计数，不阻塞微信请求线程；容器关闭时把队列中剩余日志写完再退出。
+ *
+ * @author fengjx.
+ * @date：2016/3/12
+ */
+public class ReqMsgLogWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReqMsgLogWriter.class);
+
+    // 关闭标记，放入队列唤醒写线程，不写入数据库
+    private static final WechatReqMsgLog STOP = new WechatReqMsgLog();
+
+    private WechatReqMsgLogService msgLogService;
+
+    // 队列容量
+    private int capacity = 10000;
+
+    // 每批最多写入条数
+    private int batchSize = 200;
+
+    // 批次未满时最多等待时间（毫秒）
+    private long lingerMillis = 1000;
+
+    // 关闭时等待写完的最长时间（毫秒）
+    private long shutdownTimeoutMillis = 30000;
+
+    private BlockingQueue<WechatReqMsgLog> queue;
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public void start() {
+        queue = new ArrayBlockingQueue<>(capacity);
+        running = true;
+        worker = new Thread(this::loop, "wechat-msglog-writer");
+        worker.setDaemon(true);
+        worker.start();
+        LogUtil.info(LOG, "ReqMsgLogWriter started, capacity=" + capacity + ", batchSize="
+                + batchSize + ", lingerMillis=" + lingerMillis);
+    }
+
+    /**
+     * 提交日志，队列已满时丢弃
+     *
+     * @param log
+     * @return false：日志被丢弃
+     */
+    public boolean submit(WechatReqMsgLog log) {
+        if (!running || !queue.offer(log)) {
+            long dropped = droppedCount.incrementAndGet();
+            // 避免日志刷屏，每丢弃1000条打印一次
+            if (dropped % 1000 == 1) {
+                LogUtil.warn(LOG, "请求日志队列已满或已关闭，丢弃日志，累计丢弃：" + dropped);
+            }
+            return false;
+        }
+        acceptedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 停止写入，并把队列中剩余日志写入数据库
+     * <p>
+     * 不中断写线程（中断会使正在执行的批量写入失败），通过关闭标记唤醒；
+     * 队列已满时写线程不会阻塞等待，最迟lingerMillis后发现已关闭。
+     */
+    public void shutdown() {
+        running = false;
+        if (null == worker) {
+            return;
+        }
+        queue.offer(STOP);
+        try {
+            worker.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            LogUtil.warn(LOG, "ReqMsgLogWriter关闭超时，未写入日志：" + queue.size());
+        }
+        LogUtil.info(LOG, "ReqMsgLogWriter stopped, accepted=" + acceptedCount + ", written="
+                + writtenCount + ", dropped=" + droppedCount + ", failed=" + failedCount);
+    }
+
+    private void loop() {
+        List<WechatReqMsgLog> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                WechatReqMsgLog first = running
+                        ? queue.poll(lingerMillis, TimeUnit.MILLISECONDS) : queue.poll();
+                if (null == first || first == STOP) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + lingerMillis;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || wait <= 0 || !running) {
+                        break;
+                    }
+                    WechatReqMsgLog next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (null == next || next == STOP) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 容器强制停止，写完队列后退出
+                running = false;
+            }
+            batch.removeIf(log -> log == STOP);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<WechatReqMsgLog> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            msgLogService.saveBatch(batch);
+            writtenCount.addAndGet(batch.size());
+        } catch (Exception e) {
+            failedCount.addAndGet(batch.size());
+            LogUtil.error(LOG, "批量写入请求日志失败，条数：" + batch.size(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * 队列中等待写入的日志条数
+     */
+    public int getPendingCount() {
+        return null == queue ? 0 : queue.size();
+    }
+
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public void setMsgLogService(WechatReqMsgLogService msgLogService) {
+        this.msgLogService = msgLogService;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    public void setShutdownTimeoutMillis(long shutdownTimeoutMillis) {
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+}
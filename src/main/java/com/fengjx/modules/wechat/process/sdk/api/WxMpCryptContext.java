@@ -0,0 +1,204 @@
+package com.fengjx.modules.wechat.process.sdk.api;
+
+import com.fengjx.commons.system.exception.MyRuntimeException;
+import com.fengjx.commons.utils.Encodes;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 公众号消息加解密（安全模式）
+ * <p>
+ * 与WxMpCryptUtil算法一致，区别在于每个公众号只解码一次EncodingAESKey，
+ * Cipher和MessageDigest按线程复用，不再每条消息重新创建。实例由{@link WxMpServiceRegistry}按公众号缓存。
+ *
+ * @author fengjx.
+ * @date：2016/3/16
+ */
+public class WxMpCryptContext {
+
+    private static final int BLOCK_SIZE = 32;
+
+    private static final String RANDOM_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    private final String token;
+
+    private final byte[] tokenBytes;
+
+    private final byte[] appIdBytes;
+
+    private final SecretKeySpec keySpec;
+
+    private final IvParameterSpec ivSpec;
+
+    private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance("AES/CBC/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new MyRuntimeException(e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<MessageDigest> SHA1 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (GeneralSecurityException e) {
+                throw new MyRuntimeException(e);
+            }
+        }
+    };
+
+    public WxMpCryptContext(String appId, String token, String encodingAesKey) {
+        if (StringUtils.isAnyBlank(appId, token, encodingAesKey)) {
+            throw new MyRuntimeException("公众号appId、token、encodingAESKey不能为空");
+        }
+        this.token = token;
+        this.tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+        this.appIdBytes = appId.getBytes(StandardCharsets.UTF_8);
+        byte[] aesKey = Encodes.decodeBase64(encodingAesKey + "=");
+        this.keySpec = new SecretKeySpec(aesKey, "AES");
+        this.ivSpec = new IvParameterSpec(aesKey, 0, 16);
+    }
+
+    /**
+     * 解密微信推送的消息
+     *
+     * @param msgSignature 请求参数msg_signature
+     * @param timestamp
+     * @param nonce
+     * @param encryptedXml 请求报文
+     * @return 明文xml
+     */
+    public String decrypt(String msgSignature, String timestamp, String nonce,
+            String encryptedXml) {
+        String cipherText = elementText(encryptedXml, "Encrypt");
+        if (null == cipherText) {
+            throw new MyRuntimeException("加密消息格式错误，缺少Encrypt节点");
+        }
+        if (!signature(timestamp, nonce, cipherText).equals(msgSignature)) {
+            throw new MyRuntimeException("加密消息签名校验错误");
+        }
+        byte[] plain;
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.DECRYPT_MODE, keySpec, ivSpec);
+            plain = cipher.doFinal(Encodes.decodeBase64(cipherText));
+        } catch (GeneralSecurityException e) {
+            throw new MyRuntimeException("解密消息失败", e);
+        }
+        if (plain.length < 20) {
+            throw new MyRuntimeException("解密消息失败，消息长度错误");
+        }
+        // 去除补位字符
+        int pad = plain[plain.length - 1] & 0xff;
+        if (pad < 1 || pad > BLOCK_SIZE) {
+            pad = 0;
+        }
+        int end = plain.length - pad;
+        // 16位随机字符串 + 4位消息长度 + 消息 + appId
+        int xmlLength = ((plain[16] & 0xff) << 24) | ((plain[17] & 0xff) << 16)
+                | ((plain[18] & 0xff) << 8) | (plain[19] & 0xff);
+        int appIdStart = 20 + xmlLength;
+        if (xmlLength < 0 || appIdStart > end
+                || !Arrays.equals(appIdBytes, Arrays.copyOfRange(plain, appIdStart, end))) {
+            throw new MyRuntimeException("加密消息appId校验失败");
+        }
+        return new String(plain, 20, xmlLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 加密回复消息
+     *
+     * @param plainXml 明文xml
+     * @return 加密后的xml
+     */
+    public String encrypt(String plainXml) {
+        byte[] xml = plainXml.getBytes(StandardCharsets.UTF_8);
+        int length = 20 + xml.length + appIdBytes.length;
+        int pad = BLOCK_SIZE - length % BLOCK_SIZE;
+        byte[] plain = new byte[length + pad];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 16; i++) {
+            plain[i] = (byte) RANDOM_CHARS.charAt(random.nextInt(RANDOM_CHARS.length()));
+        }
+        plain[16] = (byte) (xml.length >>> 24);
+        plain[17] = (byte) (xml.length >>> 16);
+        plain[18] = (byte) (xml.length >>> 8);
+        plain[19] = (byte) xml.length;
+        System.arraycopy(xml, 0, plain, 20, xml.length);
+        System.arraycopy(appIdBytes, 0, plain, 20 + xml.length, appIdBytes.length);
+        Arrays.fill(plain, length, plain.length, (byte) pad);
+        String cipherText;
+        try {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec, ivSpec);
+            cipherText = Encodes.encodeBase64(cipher.doFinal(plain));
+        } catch (GeneralSecurityException e) {
+            throw new MyRuntimeException("加密消息失败", e);
+        }
+        String timestamp = Long.toString(System.currentTimeMillis() / 1000L);
+        String nonce = randomString(random, 16);
+        StringBuilder res = new StringBuilder(cipherText.length() + 256);
+        res.append("<xml>\n<Encrypt><![CDATA[").append(cipherText).append("]]></Encrypt>\n");
+        res.append("<MsgSignature><![CDATA[").append(signature(timestamp, nonce, cipherText))
+                .append("]]></MsgSignature>\n");
+        res.append("<TimeStamp>").append(timestamp).append("</TimeStamp>\n");
+        res.append("<Nonce><![CDATA[").append(nonce).append("]]></Nonce>\n</xml>");
+        return res.toString();
+    }
+
+    /**
+     * sha1(排序后拼接token、timestamp、nonce、密文)
+     */
+    private String signature(String timestamp, String nonce, String cipherText) {
+        String[] arr = { token, StringUtils.defaultString(timestamp),
+                StringUtils.defaultString(nonce), cipherText };
+        Arrays.sort(arr);
+        MessageDigest digest = SHA1.get();
+        digest.reset();
+        for (String s : arr) {
+            digest.update(s == token ? tokenBytes : s.getBytes(StandardCharsets.UTF_8));
+        }
+        return Encodes.encodeHex(digest.digest());
+    }
+
+    private static String randomString(ThreadLocalRandom random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = RANDOM_CHARS.charAt(random.nextInt(RANDOM_CHARS.length()));
+        }
+        return new String(chars);
+    }
+
+    private static String elementText(String xml, String name) {
+        int start = xml.indexOf("<" + name + ">");
+        if (start < 0) {
+            return null;
+        }
+        start += name.length() + 2;
+        int end = xml.indexOf("</" + name + ">", start);
+        if (end < 0) {
+            return null;
+        }
+        String text = xml.substring(start, end).trim();
+        if (text.startsWith("<![CDATA[") && text.endsWith("]]>")) {
+            text = text.substring(9, text.length() - 3);
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.fengjx.modules.wechat.process.sdk.api;
+
+import com.fengjx.commons.plugin.db.Record;
+import com.fengjx.commons.utils.LogUtil;
+import com.fengjx.modules.wechat.process.utils.WxMpUtil;
+
+import me.chanjar.weixin.mp.api.WxMpConfigStorage;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 公众号接口实例注册表
+ * <p>
+ * 每个公众号（按public_account_id）共用一个WxMpServiceExt及其ConfigStorage，
+ * access_token、jsapi_ticket保存在ConfigStorage中直到过期，过期后由WxMpServiceImpl内部的锁保证只有一个线程去刷新。
+ * 安全模式的消息加解密实例在第一次收到加密消息时创建并缓存，encodingAESKey错误不影响明文消息和接口调用。公众号配置（appId、secret、token、aesKey等）变化时需调用{@link #remove(String)}使实例失效。
+ *
+ * @author fengjx.
+ * @date：2016/3/10
+ */
+public final class WxMpServiceRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WxMpServiceRegistry.class);
+
+    private static final ConcurrentMap<String, ServiceHolder> SERVICES = new ConcurrentHashMap<>();
+
+    private WxMpServiceRegistry() {
+    }
+
+    /**
+     * 获得公众号接口实例
+     *
+     * @param accountRecord 公众号信息
+     * @return
+     */
+    public static WxMpServiceExt getWxMpService(Record accountRecord) {
+        ServiceHolder holder = getHolder(accountRecord);
+        return null == holder ? null : holder.service;
+    }
+
+    /**
+     * 获得公众号配置（与接口实例共享，access_token缓存在其中）
+     *
+     * @param accountRecord 公众号信息
+     * @return
+     */
+    public static WxMpConfigStorage getConfigStorage(Record accountRecord) {
+        ServiceHolder holder = getHolder(accountRecord);
+        return null == holder ? null : holder.config;
+    }
+
+    /**
+     * 获得公众号消息加解密实例（未配置encodingAESKey或encodingAESKey无效时返回null）
+     *
+     * @param accountRecord 公众号信息
+     * @return
+     */
+    public static WxMpCryptContext getCryptContext(Record accountRecord) {
+        ServiceHolder holder = getHolder(accountRecord);
+        return null == holder ? null : holder.getCrypt();
+    }
+
+    /**
+     * 公众号配置修改后，删除对应实例
+     *
+     * @param publicAccountId 公众号ID（wechat_public_account.id）
+     */
+    public static void remove(String publicAccountId) {
+        if (StringUtils.isNotBlank(publicAccountId)) {
+            SERVICES.remove(publicAccountId);
+        }
+    }
+
+    /**
+     * 删除全部实例
+     */
+    public static void removeAll() {
+        SERVICES.clear();
+    }
+
+    private static ServiceHolder getHolder(Record accountRecord) {
+        if (null == accountRecord || accountRecord.isEmpty()) {
+            return null;
+        }
+        String id = accountRecord.getStr("id");
+        if (StringUtils.isBlank(id)) {
+            // 没有ID的数据无法缓存，直接创建
+            return new ServiceHolder(accountRecord);
+        }
+        ServiceHolder holder = SERVICES.get(id);
+        if (null != holder && holder.isSameConfig(accountRecord)) {
+            return holder;
+        }
+        return SERVICES.compute(id, (key, old) -> null != old && old.isSameConfig(accountRecord) ? old
+                : new ServiceHolder(accountRecord));
+    }
+
+    /**
+     * 接口实例及创建时使用的公众号配置
+     */
+    private static class ServiceHolder {
+
+        private final String appId;
+        private final String secret;
+        private final String token;
+        private final String aesKey;
+        private final String partnerId;
+        private final String partnerKey;
+
+        private final WxMpConfigStorage config;
+        private final WxMpServiceExt service;
+        private volatile WxMpCryptContext crypt;
+
+        ServiceHolder(Record accountRecord) {
+            this.appId = accountRecord.getStr("app_id");
+            this.secret = accountRecord.getStr("app_secret");
+            this.token = accountRecord.getStr("token");
+            this.aesKey = accountRecord.getStr("encodingAESKey");
+            this.partnerId = accountRecord.getStr("merchant_id");
+            this.partnerKey = accountRecord.getStr("pay_key");
+            this.config = WxMpUtil.buildConfigStorage(accountRecord);
+            this.service = new WxMpServiceImplExt();
+            this.service.setWxMpConfigStorage(config);
+        }
+
+        /**
+         * 加解密实例，第一次使用时创建；encodingAESKey无效时返回null，下次使用时重试
+         */
+        WxMpCryptContext getCrypt() {
+            WxMpCryptContext res = crypt;
+            if (null != res || StringUtils.isAnyBlank(appId, token, aesKey)) {
+                return res;
+            }
+            synchronized (this) {
+                if (null == crypt) {
+                    try {
+                        crypt = new WxMpCryptContext(appId, token, aesKey);
+                    } catch (RuntimeException e) {
+                        LogUtil.error(LOG, "公众号[" + appId + "]encodingAESKey无效", e);
+                    }
+                }
+                return crypt;
+            }
+        }
+
+        boolean isSameConfig(Record accountRecord) {
+            return Objects.equals(appId, accountRecord.getStr("app_id"))
+                    && Objects.equals(secret, accountRecord.getStr("app_secret"))
+                    && Objects.equals(token, accountRecord.getStr("token"))
+                    && Objects.equals(aesKey, accountRecord.getStr("encodingAESKey"))
+                    && Objects.equals(partnerId, accountRecord.getStr("merchant_id"))
+                    && Objects.equals(partnerKey, accountRecord.getStr("pay_key"));
+        }
+    }
+
+}
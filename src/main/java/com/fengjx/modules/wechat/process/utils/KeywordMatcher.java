@@ -0,0 +1,182 @@
+package com.fengjx.modules.wechat.process.utils;
+
+import com.fengjx.commons.plugin.db.Record;
+import com.fengjx.modules.wechat.bean.WechatRespMsgAction;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * 关键字规则匹配器
+ * <p>
+ * 按公众号规则列表（已按order_no排序）一次性构建，匹配结果与逐条顺序匹配相同：返回满足条件且排序最靠前的规则。
+ * 完全匹配用hash查找，关键字开始/结束用（反向）前缀树，包含匹配用Aho-Corasick自动机，匹配耗时只与消息长度相关。
+ * 构建完成后只读，可多线程共享。
+ *
+ * @author fengjx.
+ * @date：2016/3/13
+ */
+public class KeywordMatcher implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final List<Map<String, Object>> actions;
+
+    // 完全匹配：关键字 -> 规则下标
+    private final Map<String, Integer> exact = new HashMap<>();
+
+    // 关键字开始
+    private final Node prefix = new Node();
+
+    // 关键字结束（关键字反向插入）
+    private final Node suffix = new Node();
+
+    // 包含
+    private final Node contain = new Node();
+
+    /**
+     * @param actions 关键字规则列表，按优先级排序
+     */
+    public KeywordMatcher(List<Map<String, Object>> actions) {
+        this.actions = null == actions ? Collections.<Map<String, Object>>emptyList() : actions;
+        for (int i = 0; i < this.actions.size(); i++) {
+            Map<String, Object> action = this.actions.get(i);
+            String fuzzy = action.get("fuzzy") + "";
+            String keyword = action.get("key_word") + "";
+            if (WechatRespMsgAction.FUZZY_EXACT.equals(fuzzy)) {
+                exact.putIfAbsent(keyword, i);
+            } else if (WechatRespMsgAction.FUZZY_START.equals(fuzzy)) {
+                insert(prefix, keyword, false, i);
+            } else if (WechatRespMsgAction.FUZZY_END.equals(fuzzy)) {
+                insert(suffix, keyword, true, i);
+            } else if (WechatRespMsgAction.FUZZY_CONTAIN.equals(fuzzy)) {
+                insert(contain, keyword, false, i);
+            }
+        }
+        buildFailLinks(contain);
+    }
+
+    /**
+     * 查找匹配规则
+     *
+     * @param content 文本消息内容
+     * @return 没有匹配规则时返回null
+     */
+    public Record matching(String content) {
+        if (null == content || actions.isEmpty()) {
+            return null;
+        }
+        int best = NONE;
+        Integer index = exact.get(content);
+        if (null != index) {
+            best = index;
+        }
+        best = Math.min(best, matchTrie(prefix, content, false, best));
+        best = Math.min(best, matchTrie(suffix, content, true, best));
+        best = Math.min(best, matchContain(content, best));
+        return best == NONE ? null : new Record(actions.get(best));
+    }
+
+    public boolean isEmpty() {
+        return actions.isEmpty();
+    }
+
+    private static void insert(Node root, String keyword, boolean reverse, int index) {
+        Node node = root;
+        int len = keyword.length();
+        for (int i = 0; i < len; i++) {
+            char c = keyword.charAt(reverse ? len - 1 - i : i);
+            Node child = node.children.get(c);
+            if (null == child) {
+                child = new Node();
+                node.children.put(c, child);
+            }
+            node = child;
+        }
+        node.index = Math.min(node.index, index);
+        node.best = node.index;
+    }
+
+    /**
+     * 沿前缀树走完content，取经过的结束节点中最小的下标
+     */
+    private static int matchTrie(Node root, String content, boolean reverse, int best) {
+        Node node = root;
+        best = Math.min(best, node.index);
+        int len = content.length();
+        for (int i = 0; i < len; i++) {
+            node = node.children.get(content.charAt(reverse ? len - 1 - i : i));
+            if (null == node) {
+                break;
+            }
+            best = Math.min(best, node.index);
+        }
+        return best;
+    }
+
+    private int matchContain(String content, int best) {
+        Node node = contain;
+        best = Math.min(best, node.best);
+        for (int i = 0; i < content.length() && best > 0; i++) {
+            char c = content.charAt(i);
+            while (node != contain && !node.children.containsKey(c)) {
+                node = node.fail;
+            }
+            Node next = node.children.get(c);
+            node = null == next ? contain : next;
+            best = Math.min(best, node.best);
+        }
+        return best;
+    }
+
+    /**
+     * 广度优先构建失败指针，best取自身与失败链上所有输出的最小下标
+     */
+    private static void buildFailLinks(Node root) {
+        Queue<Node> queue = new LinkedList<>();
+        for (Node child : root.children.values()) {
+            child.fail = root;
+            child.best = Math.min(child.best, root.best);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                char c = entry.getKey();
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.children.containsKey(c)) {
+                    fail = fail.fail;
+                }
+                Node target = fail.children.get(c);
+                child.fail = null == target ? root : target;
+                child.best = Math.min(child.best, child.fail.best);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<Character, Node> children = new HashMap<>();
+
+        // 以当前节点结束的关键字对应的规则下标
+        private int index = NONE;
+
+        // 当前节点及失败链上关键字的最小规则下标（仅包含匹配使用）
+        private int best = NONE;
+
+        private Node fail;
+    }
+
+}
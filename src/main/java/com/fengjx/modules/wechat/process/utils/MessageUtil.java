@@ -34,6 +34,9 @@ import java.util.regex.Pattern;
  */
 public final class MessageUtil {
 
+    private static final Pattern MSG_TYPE_PATTERN = Pattern
+            .compile("<MsgType><!\\[CDATA\\[(.*?)\\]\\]></MsgType>|(<MsgType>(.*?)</MsgType>)");
+
     /**
      * 解析微信发来的请求（XML）
      * 
@@ -177,11 +180,9 @@ public final class MessageUtil {
      */
     public static String parseMsgType(String xml) {
         // <MsgType><![CDATA[text]]></MsgType>
-        Pattern p = Pattern
-                .compile("<MsgType><!\\[CDATA\\[(.*?)\\]\\]></MsgType>|(<MsgType>(.*?)</MsgType>)");
-        Matcher m = p.matcher(xml);
+        Matcher m = MSG_TYPE_PATTERN.matcher(xml);
         if (m.find()) {
-            return m.group(1);
+            return null != m.group(1) ? m.group(1) : m.group(3);
         }
         throw new RuntimeException("msgType unkonwn");
     }
@@ -4,13 +4,14 @@ package com.fengjx.modules.wechat.process.utils;
 import com.fengjx.commons.plugin.db.Record;
 import com.fengjx.modules.wechat.bean.WechatPublicAccount;
 import com.fengjx.modules.wechat.process.bean.MyWxMpConfigStorage;
-import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceExt;
-import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceImplExt;
+import com.fengjx.modules.wechat.process.bean.ReplyTemplate;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceRegistry;
 
 import me.chanjar.weixin.common.api.WxConsts;
 import me.chanjar.weixin.mp.api.WxMpConfigStorage;
 import me.chanjar.weixin.mp.api.WxMpService;
 import me.chanjar.weixin.mp.bean.*;
+import me.chanjar.weixin.mp.bean.custombuilder.NewsBuilder;
 
 /**
  * @author fengjx. @date：2015/6/24 0024
@@ -70,23 +71,13 @@ public final class WxMpUtil {
     }
 
     /**
-     * @param config 公众号配置
-     * @return
-     */
-    public static WxMpService getWxMpServiceByConfig(WxMpConfigStorage config) {
-        WxMpServiceExt wxMpService = new WxMpServiceImplExt();
-        wxMpService.setWxMpConfigStorage(config);
-        return wxMpService;
-    }
-
-    /**
+     * 获得公众号共享的接口实例（access_token会被缓存到过期）
+     *
      * @param account 公众号配置
      * @return
      */
-    public static WxMpService getWxMpService(WechatPublicAccount account) {
-        WxMpServiceExt wxMpService = new WxMpServiceImplExt();
-        wxMpService.setWxMpConfigStorage(buildConfigStorage(account));
-        return wxMpService;
+    public static WxMpService getWxMpService(Record account) {
+        return WxMpServiceRegistry.getWxMpService(account);
     }
 
     /**
@@ -115,4 +106,48 @@ public final class WxMpUtil {
         }
     }
 
+    /**
+     * 被动回复消息转成客服消息（超时未回复时通过客服接口补发）
+     *
+     * @param outMessage 被动回复消息
+     * @param toUser 用户openid
+     * @return 不支持的消息类型返回null
+     */
+    public static WxMpCustomMessage toCustomMessage(WxMpXmlOutMessage outMessage, String toUser) {
+        WxMpXmlOutMessage message = ReplyTemplate.unwrap(outMessage);
+        if (message instanceof WxMpXmlOutTextMessage) {
+            WxMpXmlOutTextMessage text = (WxMpXmlOutTextMessage) message;
+            return WxMpCustomMessage.TEXT().toUser(toUser).content(text.getContent()).build();
+        } else if (message instanceof WxMpXmlOutImageMessage) {
+            WxMpXmlOutImageMessage image = (WxMpXmlOutImageMessage) message;
+            return WxMpCustomMessage.IMAGE().toUser(toUser).mediaId(image.getMediaId()).build();
+        } else if (message instanceof WxMpXmlOutVoiceMessage) {
+            WxMpXmlOutVoiceMessage voice = (WxMpXmlOutVoiceMessage) message;
+            return WxMpCustomMessage.VOICE().toUser(toUser).mediaId(voice.getMediaId()).build();
+        } else if (message instanceof WxMpXmlOutVideoMessage) {
+            WxMpXmlOutVideoMessage video = (WxMpXmlOutVideoMessage) message;
+            return WxMpCustomMessage.VIDEO().toUser(toUser).mediaId(video.getMediaId())
+                    .title(video.getTitle()).description(video.getDescription()).build();
+        } else if (message instanceof WxMpXmlOutMusicMessage) {
+            WxMpXmlOutMusicMessage music = (WxMpXmlOutMusicMessage) message;
+            return WxMpCustomMessage.MUSIC().toUser(toUser).title(music.getTitle())
+                    .description(music.getDescription()).musicUrl(music.getMusicUrl())
+                    .hqMusicUrl(music.getHqMusicUrl()).thumbMediaId(music.getThumbMediaId())
+                    .build();
+        } else if (message instanceof WxMpXmlOutNewsMessage) {
+            NewsBuilder builder = WxMpCustomMessage.NEWS().toUser(toUser);
+            for (WxMpXmlOutNewsMessage.Item item : ((WxMpXmlOutNewsMessage) message)
+                    .getArticles()) {
+                WxMpCustomMessage.WxArticle article = new WxMpCustomMessage.WxArticle();
+                article.setTitle(item.getTitle());
+                article.setDescription(item.getDescription());
+                article.setPicUrl(item.getPicUrl());
+                article.setUrl(item.getUrl());
+                builder.addArticle(article);
+            }
+            return builder.build();
+        }
+        return null;
+    }
+
 }
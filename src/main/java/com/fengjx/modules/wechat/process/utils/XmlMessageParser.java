@@ -0,0 +1,211 @@
+package com.fengjx.modules.wechat.process.utils;
+
+import com.fengjx.commons.system.exception.MyRuntimeException;
+import com.fengjx.modules.wechat.process.bean.RequestBody;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import me.chanjar.weixin.mp.bean.WxMpXmlMessage;
+
+/**
+ * 微信推送消息解析
+ * <p>
+ * 用StAX顺序读取常用的扁平字段，代替XStream反射解析；
+ * 遇到不认识的节点（如扫码、发图、群发结果等事件的嵌套结构）时退回WxMpXmlMessage.fromXml。
+ *
+ * @author fengjx.
+ * @date：2016/3/15
+ */
+public final class XmlMessageParser {
+
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        // 禁止DTD和外部实体，防止XXE
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private XmlMessageParser() {
+    }
+
+    /**
+     * 解析明文消息
+     *
+     * @param body 请求报文
+     * @return
+     */
+    public static WxMpXmlMessage parse(RequestBody body) {
+        try {
+            WxMpXmlMessage message = parse(
+                    FACTORY.createXMLStreamReader(body.getInputStream(), "UTF-8"));
+            return null != message ? message : WxMpXmlMessage.fromXml(body.getInputStream());
+        } catch (Exception e) {
+            throw new MyRuntimeException("解析微信消息失败", e);
+        }
+    }
+
+    /**
+     * 解析明文消息（aes解密后的xml）
+     *
+     * @param xml
+     * @return
+     */
+    public static WxMpXmlMessage parse(String xml) {
+        try (Reader reader = new StringReader(xml)) {
+            WxMpXmlMessage message = parse(FACTORY.createXMLStreamReader(reader));
+            return null != message ? message : WxMpXmlMessage.fromXml(xml);
+        } catch (Exception e) {
+            throw new MyRuntimeException("解析微信消息失败", e);
+        }
+    }
+
+    /**
+     * @return 存在不支持的节点时返回null
+     */
+    private static WxMpXmlMessage parse(XMLStreamReader reader) throws XMLStreamException {
+        try {
+            WxMpXmlMessage message = new WxMpXmlMessage();
+            // 跳过根节点<xml>
+            reader.nextTag();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (!isSimpleField(name)) {
+                    return null;
+                }
+                setField(message, name, reader.getElementText());
+            }
+            return message;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isSimpleField(String name) {
+        switch (name) {
+            case "ToUserName":
+            case "FromUserName":
+            case "CreateTime":
+            case "MsgType":
+            case "Content":
+            case "MsgId":
+            case "PicUrl":
+            case "MediaId":
+            case "Format":
+            case "ThumbMediaId":
+            case "Location_X":
+            case "Location_Y":
+            case "Scale":
+            case "Label":
+            case "Title":
+            case "Description":
+            case "Url":
+            case "Event":
+            case "EventKey":
+            case "Ticket":
+            case "Latitude":
+            case "Longitude":
+            case "Precision":
+            case "Recognition":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void setField(WxMpXmlMessage message, String name, String text) {
+        switch (name) {
+            case "ToUserName":
+                message.setToUserName(text);
+                break;
+            case "FromUserName":
+                message.setFromUserName(text);
+                break;
+            case "CreateTime":
+                message.setCreateTime(toLong(text));
+                break;
+            case "MsgType":
+                message.setMsgType(text);
+                break;
+            case "Content":
+                message.setContent(text);
+                break;
+            case "MsgId":
+                message.setMsgId(toLong(text));
+                break;
+            case "PicUrl":
+                message.setPicUrl(text);
+                break;
+            case "MediaId":
+                message.setMediaId(text);
+                break;
+            case "Format":
+                message.setFormat(text);
+                break;
+            case "ThumbMediaId":
+                message.setThumbMediaId(text);
+                break;
+            case "Location_X":
+                message.setLocationX(toDouble(text));
+                break;
+            case "Location_Y":
+                message.setLocationY(toDouble(text));
+                break;
+            case "Scale":
+                message.setScale(toDouble(text));
+                break;
+            case "Label":
+                message.setLabel(text);
+                break;
+            case "Title":
+                message.setTitle(text);
+                break;
+            case "Description":
+                message.setDescription(text);
+                break;
+            case "Url":
+                message.setUrl(text);
+                break;
+            case "Event":
+                message.setEvent(text);
+                break;
+            case "EventKey":
+                message.setEventKey(text);
+                break;
+            case "Ticket":
+                message.setTicket(text);
+                break;
+            case "Latitude":
+                message.setLatitude(toDouble(text));
+                break;
+            case "Longitude":
+                message.setLongitude(toDouble(text));
+                break;
+            case "Precision":
+                message.setPrecision(toDouble(text));
+                break;
+            case "Recognition":
+                message.setRecognition(text);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static Long toLong(String text) {
+        return StringUtils.isBlank(text) ? null : Long.valueOf(text.trim());
+    }
+
+    private static Double toDouble(String text) {
+        return StringUtils.isBlank(text) ? null : Double.valueOf(text.trim());
+    }
+
+}
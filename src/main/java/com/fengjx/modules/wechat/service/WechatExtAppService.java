@@ -7,6 +7,7 @@ import com.fengjx.commons.plugin.db.Record;
 import com.fengjx.commons.utils.CommonUtils;
 import com.fengjx.commons.utils.DateUtils;
 import com.fengjx.modules.wechat.bean.WechatExtApp;
+import com.fengjx.modules.wechat.bean.WechatExtAppSupportType;
 import me.chanjar.weixin.common.api.WxConsts;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -117,32 +118,27 @@ public class WechatExtAppService extends Model<WechatExtApp> {
     @Transactional(propagation = Propagation.REQUIRED)
     private void reSaveSupportType(String apiId, String[] msgTypes, String[] eventTypes) {
         deleteSupportTypeByAppId(apiId);
-        StringBuilder insertSql = new StringBuilder("insert into ");
-        insertSql.append(extAppSupportService.getTableName());
-        insertSql.append("( ").append(extAppSupportService.getColumnsStr()).append(" )");
-        insertSql.append(" values (?, ?, ?, ?)");
-        List<Object[]> batchArgs = new ArrayList<>();
-        Object[] param;
+        List<WechatExtAppSupportType> supportTypes = new ArrayList<>();
         for (String msgType : msgTypes) {
             if (WxConsts.XML_MSG_EVENT.equals(msgType)) {
                 for (String eventType : eventTypes) {
-                    param = new Object[4];
-                    param[0] = CommonUtils.getPrimaryKey();
-                    param[1] = eventType;
-                    param[2] = msgType;
-                    param[3] = apiId;
-                    batchArgs.add(param);
+                    supportTypes.add(newSupportType(apiId, msgType, eventType));
                 }
             } else {
-                param = new Object[4];
-                param[0] = CommonUtils.getPrimaryKey();
-                param[1] = null;
-                param[2] = msgType;
-                param[3] = apiId;
-                batchArgs.add(param);
+                supportTypes.add(newSupportType(apiId, msgType, null));
             }
         }
-        batchExecute(insertSql.toString(), batchArgs);
+        extAppSupportService.saveBatch(supportTypes);
+    }
+
+    private WechatExtAppSupportType newSupportType(String apiId, String msgType,
+            String eventType) {
+        WechatExtAppSupportType supportType = new WechatExtAppSupportType();
+        supportType.setId(CommonUtils.getPrimaryKey());
+        supportType.setEventType(eventType);
+        supportType.setMsgType(msgType);
+        supportType.setExtAppId(apiId);
+        return supportType;
     }
 
     /**
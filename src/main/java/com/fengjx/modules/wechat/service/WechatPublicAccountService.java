@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.wechat.service;
 
+import com.fengjx.commons.plugin.cache.CacheWarmer;
 import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
 import com.fengjx.commons.plugin.db.Model;
 import com.fengjx.commons.plugin.db.Record;
@@ -11,10 +12,11 @@ import com.fengjx.commons.utils.StrUtil;
 import com.fengjx.modules.common.constants.AppConfig;
 import com.fengjx.modules.wechat.bean.WechatPublicAccount;
 import com.fengjx.modules.wechat.constants.WechatConst;
-import com.fengjx.modules.wechat.process.utils.WxMpUtil;
+import com.fengjx.modules.wechat.process.sdk.api.WxMpServiceRegistry;
 import com.google.common.collect.Maps;
 import me.chanjar.weixin.mp.api.WxMpConfigStorage;
 import me.chanjar.weixin.mp.api.WxMpService;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,7 +29,8 @@ import java.util.Map;
  * Autu Generated .
  */
 @Component
-public class WechatPublicAccountService extends Model<WechatPublicAccount> {
+public class WechatPublicAccountService extends Model<WechatPublicAccount>
+        implements CacheWarmer {
 
     /**
      * 根据userid获得公众账号信息
@@ -70,7 +73,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
     public WechatPublicAccount updateAccount(WechatPublicAccount publicAccount, String userId) {
         validAccount(publicAccount.getId(), userId);
         update(publicAccount);
-        removeCache();
+        removeCache(publicAccount.getId());
         return findById(publicAccount.getId());
     }
 
@@ -93,7 +96,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
     public Record reset(String id, String userId) {
         Map<String, Object> attrs = resetAttrs(id, userId);
         update(attrs);
-        removeCache();
+        removeCache(id);
         return findById(id);
     }
 
@@ -126,8 +129,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
      * @return
      */
     public WxMpConfigStorage getWxMpConfigStorageByUserId(String userId) {
-        Record record = getAccountByUserId(userId);
-        return WxMpUtil.buildConfigStorage(record);
+        return WxMpServiceRegistry.getConfigStorage(getAccountByUserId(userId));
     }
 
     /**
@@ -153,7 +155,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
      * @return
      */
     public WxMpConfigStorage getWxMpConfigStorageByTicket(String ticket) {
-        return WxMpUtil.buildConfigStorage(findByTicket(ticket));
+        return WxMpServiceRegistry.getConfigStorage(findByTicket(ticket));
     }
 
     /**
@@ -163,7 +165,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
      * @return
      */
     public WxMpService getWxMpService(String userId) {
-        return WxMpUtil.getWxMpServiceByConfig(getWxMpConfigStorageByUserId(userId));
+        return WxMpServiceRegistry.getWxMpService(getAccountByUserId(userId));
     }
 
     /**
@@ -173,7 +175,7 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
      * @return
      */
     public WxMpService getWxMpServiceByAccountId(String accountId) {
-        return WxMpUtil.getWxMpService(getAccountByAccountId(accountId));
+        return WxMpServiceRegistry.getWxMpService(getAccountByAccountId(accountId));
     }
 
     /**
@@ -183,14 +185,39 @@ public class WechatPublicAccountService extends Model<WechatPublicAccount> {
      * @return
      */
     public WxMpService getWxMpServiceByTicket(String ticket) {
-        return WxMpUtil.getWxMpServiceByConfig(getWxMpConfigStorageByTicket(ticket));
+        return WxMpServiceRegistry.getWxMpService(findByTicket(ticket));
+    }
+
+    @Override
+    public String getCacheName() {
+        return AppConfig.EhcacheName.WECHAT_PUBLIC_ACCOUNT;
     }
 
     /**
-     * 删除公众号缓存
+     * 一次查询加载所有已配置、已激活的公众号，同时按加密后的ticket缓存（微信接口请求使用加密ticket）
+     */
+    @Override
+    public void warm() {
+        String sql = "select * from " + getTableName() + " where valid_state in (?, ?)";
+        for (WechatPublicAccount publicAccount : find(sql,
+                WechatConst.PublicAccount.VALID_STATE_EXCESS,
+                WechatConst.PublicAccount.VALID_STATE_ACTIVATE)) {
+            buildCache(publicAccount);
+            if (StringUtils.isNotBlank(publicAccount.getTicket())) {
+                EhCacheUtil.put(AppConfig.EhcacheName.WECHAT_PUBLIC_ACCOUNT,
+                        AesUtil.encrypt(publicAccount.getTicket()), publicAccount);
+            }
+        }
+    }
+
+    /**
+     * 删除公众号缓存，同时删除公众号接口实例（配置可能已修改）
+     *
+     * @param id 公众号ID
      */
-    private void removeCache() {
+    private void removeCache(String id) {
         EhCacheUtil.removeAll(AppConfig.EhcacheName.WECHAT_PUBLIC_ACCOUNT);
+        WxMpServiceRegistry.remove(id);
     }
 
     /**
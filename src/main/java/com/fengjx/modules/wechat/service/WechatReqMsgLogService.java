@@ -1,16 +1,21 @@
 
 package com.fengjx.modules.wechat.service;
 
+import com.fengjx.commons.plugin.db.Keyset;
+import com.fengjx.commons.plugin.db.KeysetPage;
 import com.fengjx.commons.plugin.db.Model;
 import com.fengjx.commons.plugin.db.Page;
 import com.fengjx.commons.plugin.db.Record;
 import com.fengjx.commons.utils.DateUtils;
 import com.fengjx.modules.wechat.bean.WechatReqMsgLog;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 
@@ -20,6 +25,9 @@ import java.util.Map;
 @Component
 public class WechatReqMsgLogService extends Model<WechatReqMsgLog> {
 
+    // 游标分页每页最大条数
+    private static final int MAX_SCROLL_LIMIT = 100;
+
     @Autowired
     private WechatPublicAccountService publicAccountService;
 
@@ -30,8 +38,48 @@ public class WechatReqMsgLogService extends Model<WechatReqMsgLog> {
      * @return
      */
     public Page<Map<String, Object>> pageList(Map<String, String> attrs, String userId) {
-        Record accounRecordt = publicAccountService.getAccountByUserId(userId);
         List<Object> params = new ArrayList<>();
+        StringBuilder sql = buildQuerySql(attrs, userId, params);
+        sql.append(" order by l.in_time desc");
+        return paginate(sql.toString(), params.toArray());
+    }
+
+    /**
+     * 游标分页查询，按in_time、id倒序，不统计总数
+     *
+     * @param attrs 查询条件，cursor：上一页返回的游标，limit：每页条数（1~100，默认20）
+     * @param userId
+     * @return
+     */
+    public KeysetPage<Record> scrollList(Map<String, String> attrs, String userId) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = buildQuerySql(attrs, userId, params);
+        Keyset keyset = Keyset.desc("l.in_time", "l.id").after(attrs.get("cursor"));
+        int limit = NumberUtils.toInt(attrs.get("limit"), 20);
+        limit = Math.max(1, Math.min(MAX_SCROLL_LIMIT, limit));
+        return keysetPage(Record.class, keyset, limit, false, sql.toString(), params.toArray());
+    }
+
+    /**
+     * 查询单条日志（包含延迟加载的resp_xml）
+     *
+     * @param id
+     * @param userId
+     * @return 不存在或不属于当前用户的公众号时返回null
+     */
+    public WechatReqMsgLog getDetail(String id, String userId) {
+        WechatReqMsgLog log = findById(id);
+        Record accountRecord = publicAccountService.getAccountByUserId(userId);
+        if (null == log || null == accountRecord
+                || !accountRecord.getStr("id").equals(log.getPublicAccountId())) {
+            return null;
+        }
+        return log;
+    }
+
+    private StringBuilder buildQuerySql(Map<String, String> attrs, String userId,
+            List<Object> params) {
+        Record accounRecordt = publicAccountService.getAccountByUserId(userId);
         StringBuilder sql = new StringBuilder(getSelectSql());
         sql.append(" l where l.public_account_id = ?");
         params.add(accounRecordt.getStr("id"));
@@ -47,16 +95,18 @@ public class WechatReqMsgLogService extends Model<WechatReqMsgLog> {
             sql.append(" and l.event_type = ? ");
             params.add(attrs.get("event_type"));
         }
-        if (StringUtils.isNotBlank(attrs.get("start_time"))) {
-            sql.append(" and l.in_time > ?");
-            params.add(DateUtils.parseDate(attrs.get("start_time") + " 00:00:00"));
+        // 表按in_time月分区，时间条件用半开区间[start, end + 1天)，只扫描范围内的分区
+        Date startTime = DateUtils.parseDate(attrs.get("start_time"));
+        if (null != startTime) {
+            sql.append(" and l.in_time >= ?");
+            params.add(startTime);
         }
-        if (StringUtils.isNotBlank(attrs.get("end_time"))) {
+        Date endTime = DateUtils.parseDate(attrs.get("end_time"));
+        if (null != endTime) {
             sql.append(" and l.in_time < ?");
-            params.add(DateUtils.parseDate(attrs.get("end_time") + " 23:59:59"));
+            params.add(DateUtils.addDays(DateUtils.truncate(endTime, Calendar.DATE), 1));
         }
-        sql.append(" order by l.in_time desc");
-        return paginate(sql.toString(), params.toArray());
+        return sql;
     }
 
 }
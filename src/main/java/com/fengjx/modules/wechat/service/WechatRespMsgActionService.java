@@ -1,6 +1,7 @@
 
 package com.fengjx.modules.wechat.service;
 
+import com.fengjx.commons.plugin.cache.CacheWarmer;
 import com.fengjx.commons.plugin.cache.IDataLoader;
 import com.fengjx.commons.plugin.cache.ehcache.EhCacheUtil;
 import com.fengjx.commons.plugin.db.Model;
@@ -9,12 +10,17 @@ import com.fengjx.commons.plugin.db.Record;
 import com.fengjx.commons.system.exception.MyRuntimeException;
 import com.fengjx.commons.utils.CommonUtils;
 import com.fengjx.commons.utils.DateUtils;
+import com.fengjx.commons.utils.LogUtil;
 import com.fengjx.modules.common.constants.AppConfig;
 import com.fengjx.modules.common.constants.Constants;
+import com.fengjx.modules.common.constants.MsgTemplateConstants;
 import com.fengjx.modules.wechat.bean.WechatExtApp;
 import com.fengjx.modules.wechat.bean.WechatMaterial;
 import com.fengjx.modules.wechat.bean.WechatMenu;
+import com.fengjx.modules.wechat.bean.WechatPublicAccount;
 import com.fengjx.modules.wechat.bean.WechatRespMsgAction;
+import com.fengjx.modules.wechat.constants.WechatConst;
+import com.fengjx.modules.wechat.process.utils.KeywordMatcher;
 import me.chanjar.weixin.common.api.WxConsts;
 import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -27,6 +33,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,7 +41,8 @@ import java.util.Map;
  * Autu Generated .
  */
 @Component
-public class WechatRespMsgActionService extends Model<WechatRespMsgAction> {
+public class WechatRespMsgActionService extends Model<WechatRespMsgAction>
+        implements CacheWarmer {
 
     private static final Logger LOG = LoggerFactory.getLogger(WechatRespMsgActionService.class);
 
@@ -212,22 +220,118 @@ public class WechatRespMsgActionService extends Model<WechatRespMsgAction> {
      * @param userId
      * @return
      */
-    public List<Map<String, Object>> loadKeywordActions(final String userId) {
+    public List<Map<String, Object>> loadKeywordActions(String userId) {
+        List<Object> parameters = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(detailSql());
+        sql.append(" where a.user_id = ? and a.req_type = ? order by a.order_no");
+        parameters.add(userId);
+        parameters.add(WxConsts.XML_MSG_TEXT);
+        return findList(sql.toString(), parameters.toArray());
+    }
+
+    /**
+     * 获得关键字匹配器，按用户缓存，关键字规则修改后删除缓存，下次使用时重新构建
+     *
+     * @param userId
+     * @return
+     */
+    public KeywordMatcher loadKeywordMatcher(final String userId) {
         return EhCacheUtil.get(AppConfig.EhcacheName.WECHAT_KEYWORD_ACTION_CACHE, userId,
-                new IDataLoader<List<Map<String, Object>>>() {
+                new IDataLoader<KeywordMatcher>() {
                     @Override
-                    public List<Map<String, Object>> load() {
-                        List<Object> parameters = new ArrayList<>();
-                        StringBuilder sql = new StringBuilder(detailSql());
-                        sql.append(
-                                " where a.user_id = ? and a.req_type = ? order by a.order_no");
-                        parameters.add(userId);
-                        parameters.add(WxConsts.XML_MSG_TEXT);
-                        return findList(sql.toString(), parameters.toArray());
+                    public KeywordMatcher load() {
+                        return new KeywordMatcher(loadKeywordActions(userId));
                     }
                 });
     }
 
+    @Override
+    public String getCacheName() {
+        return AppConfig.EhcacheName.WECHAT_ACTION_CACHE;
+    }
+
+    /**
+     * 预热已配置、已激活公众号的消息规则，按用户批量查询：
+     * <p>
+     * 1. 关键字匹配器（wechatKeywordActionCache），没有关键字规则的用户缓存空匹配器；<br>
+     * 2. 消息处理时按（请求类型、事件类型、关键字）和默认回复查询的规则（wechatActionCache），
+     * 只缓存与{@link #loadMsgAction(String, String, String, String, String)}查询结果一致（唯一匹配）的规则。
+     */
+    @Override
+    public void warm() {
+        String activeUsers = " a.user_id in (select sys_user_id from "
+                + getTableName(WechatPublicAccount.class) + " where valid_state in (?, ?))";
+        String excess = WechatConst.PublicAccount.VALID_STATE_EXCESS;
+        String activate = WechatConst.PublicAccount.VALID_STATE_ACTIVATE;
+
+        Map<String, List<Map<String, Object>>> keywordActions = new HashMap<>();
+        List<Map<String, Object>> users = findList("select sys_user_id from "
+                + getTableName(WechatPublicAccount.class) + " where valid_state in (?, ?)",
+                excess, activate);
+        for (Map<String, Object> user : users) {
+            keywordActions.put((String) user.get("sys_user_id"), new ArrayList<>());
+        }
+        List<Map<String, Object>> keywords = findList(detailSql() + " where a.req_type = ? and"
+                + activeUsers + " order by a.user_id, a.order_no", WxConsts.XML_MSG_TEXT, excess,
+                activate);
+        for (Map<String, Object> action : keywords) {
+            keywordActions.computeIfAbsent((String) action.get("user_id"),
+                    userId -> new ArrayList<>()).add(action);
+        }
+        for (Map.Entry<String, List<Map<String, Object>>> e : keywordActions.entrySet()) {
+            EhCacheUtil.put(AppConfig.EhcacheName.WECHAT_KEYWORD_ACTION_CACHE, e.getKey(),
+                    new KeywordMatcher(e.getValue()));
+        }
+
+        Map<String, List<Record>> userActions = new HashMap<>();
+        for (Record action : find(Record.class, detailSql() + " where" + activeUsers, excess,
+                activate)) {
+            userActions.computeIfAbsent(action.getStr("user_id"), userId -> new ArrayList<>())
+                    .add(action);
+        }
+        int count = 0;
+        for (List<Record> actions : userActions.values()) {
+            for (Record action : actions) {
+                if (MsgTemplateConstants.WECHAT_DEFAULT_MSG.equals(action.getStr("ext_type"))) {
+                    count += warmAction(actions, action, action.getStr("ext_type"), null, null,
+                            null);
+                }
+                count += warmAction(actions, action, null, action.getStr("req_type"),
+                        action.getStr("event_type"), action.getStr("key_word"));
+            }
+        }
+        LogUtil.info(LOG, "预热关键字规则" + keywordActions.size() + "个用户，消息规则" + count + "条");
+    }
+
+    /**
+     * 规则是该查询条件唯一匹配的规则时放入缓存
+     *
+     * @param actions 用户的所有规则
+     * @param action 要缓存的规则
+     * @return 放入缓存的条数
+     */
+    private int warmAction(List<Record> actions, Record action, String extType, String reqType,
+            String eventType, String keyword) {
+        for (Record other : actions) {
+            if (other != action && matches(other, "ext_type", extType)
+                    && matches(other, "req_type", reqType)
+                    && matches(other, "event_type", eventType)
+                    && matches(other, "key_word", keyword)) {
+                return 0;
+            }
+        }
+        EhCacheUtil.put(AppConfig.EhcacheName.WECHAT_ACTION_CACHE, buildCacheKey(extType, reqType,
+                eventType, keyword, action.getStr("user_id")), action);
+        return 1;
+    }
+
+    /**
+     * 与查询条件一致，条件为空时不过滤；忽略大小写，数据库排序规则不区分大小写时也不会误判为唯一
+     */
+    private static boolean matches(Record action, String column, String value) {
+        return StringUtils.isBlank(value) || value.equalsIgnoreCase(action.getStr(column));
+    }
+
     /**
      * 根据id批量删除消息规则
      *
@@ -367,6 +471,9 @@ public class WechatRespMsgActionService extends Model<WechatRespMsgAction> {
 
     /**
      * 删除action缓存
+     * <p>
+     * 关键字规则同时在关键字匹配器和按查询条件的规则缓存中（管理后台查询、预热），两个都要删除；
+     * 默认回复还按（ext_type）缓存了一份，见{@link #warm()}
      *
      * @param actionMap
      */
@@ -381,9 +488,12 @@ public class WechatRespMsgActionService extends Model<WechatRespMsgAction> {
         String userId = (String) actionMap.get("user_id");
         if (WxConsts.XML_MSG_TEXT.equals(reqType)) {
             EhCacheUtil.remove(AppConfig.EhcacheName.WECHAT_KEYWORD_ACTION_CACHE, userId);
-        } else {
+        }
+        EhCacheUtil.remove(AppConfig.EhcacheName.WECHAT_ACTION_CACHE,
+                buildCacheKey(extType, reqType, eventType, keyword, userId));
+        if (MsgTemplateConstants.WECHAT_DEFAULT_MSG.equals(extType)) {
             EhCacheUtil.remove(AppConfig.EhcacheName.WECHAT_ACTION_CACHE,
-                    buildCacheKey(extType, reqType, eventType, keyword, userId));
+                    buildCacheKey(extType, null, null, null, userId));
         }
     }
 
@@ -46,7 +46,8 @@ $(function () {
             label: '响应内容',
             sortable: false,
             formatter: function (value, opt, row) {
-                if (!value || value == '') {
+                // resp_xml不在列表中返回，有响应时间即可查看
+                if (!row.resp_time) {
                     return "无";
                 }
                 var html = '<a class="btn btn-info btn-minier" onclick="view(\'' + row.id + '\');" href="javascript:void(0);">查看</a>';
@@ -57,12 +58,6 @@ $(function () {
             label: '响应时间',
             sortable: false
 
-        }, {
-            name: 'resp_xml',
-            hidden: true,
-            formatter: function (value, opt, row) {
-                return $.jgrid.htmlEncode(value);
-            }
         }],
 
         serializeGridData: function (postData) {
@@ -143,12 +138,24 @@ function view(id) {
             return false;
         }
     }
-    var row = $table.jqGrid('getRowData', id);
-    // 预览效果HTML
-    var viewHtml = parseRespxml2html(row.resp_xml, row.resp_time);
-    app.alertModal(viewHtml,{
-        title:"用户收到的消息",
-        height:"auto",
-        width:300
+    $.ajax({
+        url: adminPath + '/wechat/msglog/detail',
+        data: {
+            "id": id
+        },
+        dataType: "json",
+        success: function (res) {
+            if (!res || !res.resp_xml) {
+                app.alertModal("无响应内容");
+                return;
+            }
+            // 预览效果HTML
+            var viewHtml = parseRespxml2html(res.resp_xml, res.resp_time);
+            app.alertModal(viewHtml,{
+                title:"用户收到的消息",
+                height:"auto",
+                width:300
+            });
+        }
     });
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.fengjx.commons.plugin.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存加载统计
+ *
+ * @author fengjx.
+ * @date：2016/3/25
+ */
+public class CacheLoadStatsTest {
+
+    @Test
+    public void testPercentile() {
+        CacheLoadStats stats = new CacheLoadStats();
+        Assert.assertEquals(0, stats.percentile(99));
+        for (int i = 0; i < 90; i++) {
+            stats.recordRequest();
+            stats.recordLoad(TimeUnit.MICROSECONDS.toNanos(500), true);
+        }
+        for (int i = 0; i < 10; i++) {
+            stats.recordRequest();
+            stats.recordLoad(TimeUnit.MILLISECONDS.toNanos(150), i > 0);
+        }
+        Assert.assertEquals(100, stats.getLoadCount());
+        Assert.assertEquals(1, stats.percentile(50));
+        Assert.assertEquals(1, stats.percentile(90));
+        Assert.assertEquals(200, stats.percentile(99));
+        Map<String, Object> map = stats.toMap();
+        Assert.assertEquals(1L, map.get("loadFailureCount"));
+        Assert.assertEquals(150L, map.get("maxLoadMillis"));
+        Assert.assertEquals(0.0, (Double) map.get("loaderHitRate"), 0.0001);
+    }
+
+}
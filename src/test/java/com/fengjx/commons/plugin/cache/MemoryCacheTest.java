@@ -0,0 +1,124 @@
+package com.fengjx.commons.plugin.cache;
+
+import com.fengjx.commons.plugin.cache.memory.MemoryCache;
+import com.fengjx.commons.plugin.cache.memory.MemoryCacheConfig;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内存缓存：并发单次加载、空结果缓存、过期、容量限制
+ *
+ * @author fengjx.
+ * @date：2016/3/24
+ */
+public class MemoryCacheTest {
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        MemoryCache cache = new MemoryCache(5, TimeUnit.MINUTES);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("hot", () -> {
+                        loads.incrementAndGet();
+                        sleep(200);
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                Assert.assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testNullValue() throws Exception {
+        MemoryCache cache = new MemoryCache(60000, 100, TimeUnit.MILLISECONDS, 0);
+        AtomicInteger loads = new AtomicInteger();
+        IDataLoader<String> loader = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        Assert.assertNull(cache.get("missing", loader));
+        Assert.assertNull(cache.get("missing", loader));
+        Assert.assertNull(cache.get("missing"));
+        Assert.assertEquals(1, loads.get());
+        sleep(150);
+        Assert.assertNull(cache.get("missing", loader));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testNullExpireBounded() {
+        Assert.assertEquals(MemoryCacheConfig.DEFAULT_NULL_EXPIRE_SECONDS,
+                new MemoryCacheConfig("forever", 0, TimeUnit.SECONDS).getNullExpire());
+        Assert.assertEquals(10, new MemoryCacheConfig("short", 10, TimeUnit.SECONDS).getNullExpire());
+        Assert.assertEquals(1, new MemoryCacheConfig("hours", 0, TimeUnit.HOURS).getNullExpire());
+    }
+
+    @Test
+    public void testEntryTtl() throws Exception {
+        MemoryCache cache = new MemoryCache(5, TimeUnit.MINUTES);
+        cache.add("short", "a", 1);
+        cache.add("long", "b");
+        Assert.assertEquals("a", cache.get("short"));
+        sleep(1100);
+        Assert.assertNull(cache.get("short"));
+        Assert.assertEquals("b", cache.get("long"));
+        Assert.assertEquals(1L, cache.getStats().get("expiredCount"));
+    }
+
+    @Test
+    public void testRemove() {
+        MemoryCache cache = new MemoryCache(5, TimeUnit.MINUTES);
+        cache.add("a", 1);
+        cache.add("b", 2);
+        Assert.assertTrue(cache.remove("a"));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(2, (int) cache.get("b"));
+        Assert.assertTrue(cache.removeAll());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testMaximumWeight() {
+        MemoryCacheConfig config = new MemoryCacheConfig("weight", 5, TimeUnit.MINUTES);
+        config.setMaximumWeight(100);
+        MemoryCache cache = CacheFactory.registerMemoryCache(config);
+        Assert.assertSame(cache, CacheFactory.getSimpleCache("weight"));
+        for (int i = 0; i < 10; i++) {
+            cache.add("k" + i, "0123456789012345678901234567890123456789");
+        }
+        Assert.assertTrue(cache.size() < 10);
+        Assert.assertTrue((Long) cache.getStats().get("evictionCount") > 0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.fengjx.commons.plugin.db;
+
+import com.fengjx.commons.plugin.db.dialect.MysqlDialect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 游标分页sql
+ *
+ * @author fengjx.
+ * @date：2016/3/27
+ */
+public class KeysetPaginateTest {
+
+    private MysqlDialect dialect = new MysqlDialect();
+
+    @Test
+    public void testFirstPage() {
+        List<Object> paras = new ArrayList<>();
+        String sql = dialect.forKeysetPaginate("select * from t order by c desc",
+                Keyset.desc("in_time", "id"), 20, paras);
+        Assert.assertEquals("select * from t order by in_time desc, id desc limit 20", sql);
+        Assert.assertTrue(paras.isEmpty());
+    }
+
+    @Test
+    public void testWrapWhere() {
+        List<Object> paras = new ArrayList<>(Arrays.asList("a", "b"));
+        String sql = dialect.forKeysetPaginate("select * from t\nwhere\tx = ? or y = ?",
+                Keyset.desc("in_time", "id").after(1L, "9"), 20, paras);
+        Assert.assertEquals("select * from t\nwhere (x = ? or y = ?) and ((in_time < ?) or "
+                + "(in_time = ? and id < ?)) order by in_time desc, id desc limit 20", sql);
+        Assert.assertEquals(Arrays.asList("a", "b", 1L, 1L, "9"), paras);
+    }
+
+    @Test
+    public void testSubqueryWhere() {
+        List<Object> paras = new ArrayList<>();
+        String sql = dialect.forKeysetPaginate(
+                "select l.* from log l join (select id from a where s = 'where') a on l.a_id = a.id",
+                Keyset.asc("l.id").after((Object) "9"), 10, paras);
+        Assert.assertEquals("select l.* from log l join (select id from a where s = 'where') a "
+                + "on l.a_id = a.id where ((l.id > ?)) order by l.id asc limit 10", sql);
+    }
+
+    @Test(expected = MyDbException.class)
+    public void testGroupBy() {
+        dialect.forKeysetPaginate("select id, count(1) from t group by id", Keyset.asc("id"), 10,
+                new ArrayList<>());
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.fengjx.commons.plugin.db;
+
+import com.fengjx.commons.plugin.db.dialect.MysqlDialect;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+/**
+ * 读写分离路由
+ *
+ * @author fengjx.
+ * @date：2016/3/22
+ */
+public class ReadRouteTest {
+
+    private JdbcTemplate primary;
+
+    private JdbcTemplate replica1;
+
+    private JdbcTemplate replica2;
+
+    private Config config;
+
+    @Before
+    public void setUp() {
+        primary = new JdbcTemplate();
+        replica1 = new JdbcTemplate();
+        replica2 = new JdbcTemplate();
+        config = new Config(new MysqlDialect(), primary);
+        config.setReadJdbcTemplates(Arrays.asList(replica1, replica2));
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    public void testNoReplica() {
+        Config single = new Config(new MysqlDialect(), primary);
+        Assert.assertSame(primary, single.getReadJdbcTemplate());
+    }
+
+    @Test
+    public void testRoundRobin() {
+        Assert.assertSame(replica1, config.getReadJdbcTemplate());
+        Assert.assertSame(replica2, config.getReadJdbcTemplate());
+        Assert.assertSame(replica1, config.getReadJdbcTemplate());
+    }
+
+    @Test
+    public void testPrimaryOverride() {
+        JdbcTemplate t = ReadRoute.primary(() -> ReadRoute.primary(() -> config
+                .getReadJdbcTemplate()));
+        Assert.assertSame(primary, t);
+        Assert.assertFalse(ReadRoute.isPrimary());
+        Assert.assertNotSame(primary, config.getReadJdbcTemplate());
+    }
+
+    @Test
+    public void testTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Assert.assertSame(primary, config.getReadJdbcTemplate());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Assert.assertNotSame(primary, config.getReadJdbcTemplate());
+    }
+
+    @Test
+    public void testWrittenInReadOnlyTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Assert.assertNotSame(primary, config.getReadJdbcTemplate());
+        Assert.assertSame(primary, config.getWriteJdbcTemplate());
+        Assert.assertSame(primary, config.getWriteJdbcTemplate());
+        Assert.assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        Assert.assertSame(primary, config.getReadJdbcTemplate());
+        // 事务结束后恢复读从库
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        Assert.assertNotSame(primary, config.getReadJdbcTemplate());
+    }
+
+}
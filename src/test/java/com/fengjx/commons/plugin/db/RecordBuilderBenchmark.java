@@ -0,0 +1,164 @@
+package com.fengjx.commons.plugin.db;
+
+import com.fengjx.modules.wechat.bean.WechatReqMsgLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 结果集构建基准：逐行读取列元数据（原实现）与每次查询只读取一次（{@link RecordBuilder.ColumnMeta}）
+ * <p>
+ * 结果集为内存中的wechat_req_msg_log行，getMetaData每次返回新对象（与MySQL驱动一致），
+ * 只比较RecordBuilder本身的开销。运行main方法，或在test classpath上执行
+ * org.openjdk.jmh.Main RecordBuilderBenchmark。
+ *
+ * @author fengjx.
+ * @date：2016/3/27
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBuilderBenchmark {
+
+    private static final String[] LABELS = { "id", "create_time", "event_type",
+            "from_user_name", "in_time", "msg_id", "req_type", "req_xml", "resp_time", "resp_xml",
+            "to_user_name", "public_account_id" };
+
+    private static final int[] TYPES = { Types.VARCHAR, Types.TIMESTAMP, Types.VARCHAR,
+            Types.VARCHAR, Types.TIMESTAMP, Types.BIGINT, Types.VARCHAR, Types.LONGVARBINARY,
+            Types.TIMESTAMP, Types.LONGVARBINARY, Types.VARCHAR, Types.VARCHAR };
+
+    @Param({ "20", "500" })
+    private int rows;
+
+    private Object[][] data;
+
+    // 当前行，下标从0开始
+    private int cursor;
+
+    private ResultSet rs;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        data = new Object[rows][];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        byte[] xml = ("<xml><ToUserName><![CDATA[gh_3b3b8e5a7d2c]]></ToUserName>"
+                + "<MsgType><![CDATA[text]]></MsgType><Content><![CDATA[hello]]></Content></xml>")
+                        .getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < rows; i++) {
+            data[i] = new Object[] { "4028818a53a1c1e00153a1c5b0b8" + (1000 + i), now, null,
+                    "oUpF8uMuAJO_M2pxb1Q9zNjWeS6o", now, 6264377958262421504L + i, "text", xml,
+                    now, xml, "gh_3b3b8e5a7d2c", "4028818a53a1c1e00153a1c5b0b80001" };
+        }
+        rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor < rows;
+                        case "getObject":
+                            return data[cursor][(Integer) args[0] - 1];
+                        case "getMetaData":
+                            return newMetaData();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ResultSetMetaData newMetaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(
+                RecordBuilderBenchmark.class.getClassLoader(),
+                new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return LABELS.length;
+                        case "getColumnLabel":
+                            return LABELS[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return TYPES[(Integer) args[0] - 1];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * 原实现：每行getMetaData，反射newInstance
+     */
+    @Benchmark
+    public void perRowMetaData(Blackhole bh) throws Exception {
+        cursor = -1;
+        while (rs.next()) {
+            bh.consume(legacyBuild(rs, WechatReqMsgLog.class));
+        }
+    }
+
+    /**
+     * 当前实现：第一行读取ColumnMeta，后续行复用
+     */
+    @Benchmark
+    public void cachedColumnMeta(Blackhole bh) throws Exception {
+        cursor = -1;
+        RecordBuilder.ColumnMeta meta = null;
+        while (rs.next()) {
+            if (null == meta) {
+                meta = RecordBuilder.ColumnMeta.of(rs, WechatReqMsgLog.class);
+            }
+            bh.consume(RecordBuilder.build(rs, WechatReqMsgLog.class, meta));
+        }
+    }
+
+    /**
+     * 优化前的RecordBuilder.build（只保留非LOB列的分支，基准数据没有LOB类型）
+     */
+    private static <T extends Record> T legacyBuild(ResultSet rs, Class<T> modelClass)
+            throws SQLException, InstantiationException, IllegalAccessException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        String[] labelNames = new String[columnCount + 1];
+        int[] types = new int[columnCount + 1];
+        for (int i = 1; i <= columnCount; i++) {
+            labelNames[i] = rsmd.getColumnLabel(i);
+            types[i] = rsmd.getColumnType(i);
+        }
+        T ar = modelClass.newInstance();
+        Map<String, Object> attrs = ar._getColumns();
+        for (int i = 1; i <= columnCount; i++) {
+            attrs.put(labelNames[i], rs.getObject(i));
+        }
+        return ar;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RecordBuilderBenchmark.class.getSimpleName()).build()).run();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.fengjx.modules.wechat.process;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.chanjar.weixin.mp.bean.WxMpXmlMessage;
+
+/**
+ * 微信消息排重
+ *
+ * @author fengjx.
+ * @date：2016/3/27
+ */
+public class MsgDedupCacheTest {
+
+    private MsgDedupCache cache;
+
+    private WxMpXmlMessage message;
+
+    @Before
+    public void setUp() {
+        cache = new MsgDedupCache();
+        cache.init();
+        message = new WxMpXmlMessage();
+        message.setToUserName("gh_3b3b8e5a7d2c");
+        message.setFromUserName("oUpF8uMuAJO_M2pxb1Q9zNjWeS6o");
+        message.setMsgId(6264377958262421504L);
+    }
+
+    @Test
+    public void testRetryReturnsFirstResult() {
+        AtomicInteger calls = new AtomicInteger();
+        Assert.assertEquals("ok", cache.process(message, () -> {
+            calls.incrementAndGet();
+            return "ok";
+        }));
+        Assert.assertEquals("ok", cache.process(message, () -> {
+            calls.incrementAndGet();
+            return "again";
+        }));
+        Assert.assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testFailureNotCached() {
+        try {
+            cache.process(message, () -> {
+                throw new IllegalStateException("failed");
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("failed", e.getMessage());
+        }
+        // 重发的消息重新处理
+        Assert.assertEquals("ok", cache.process(message, () -> "ok"));
+    }
+
+}
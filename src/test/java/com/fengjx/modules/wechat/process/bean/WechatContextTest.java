@@ -0,0 +1,67 @@
+package com.fengjx.modules.wechat.process.bean;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求上下文在线程池中传递
+ *
+ * @author fengjx.
+ * @date：2016/3/27
+ */
+public class WechatContextTest {
+
+    private ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+        WechatContext.removeAll();
+    }
+
+    @Test
+    public void testWrapOnPoolThread() throws Exception {
+        WechatContext.setEncryptType("aes");
+        WechatContext.Snapshot snapshot = WechatContext.snapshot();
+        String encryptType = CompletableFuture
+                .supplyAsync(snapshot.wrap(WechatContext::getEncryptType), pool).get();
+        Assert.assertEquals("aes", encryptType);
+        // 线程池线程执行完后清除上下文
+        Assert.assertNull(pool.submit(WechatContext::getEncryptType).get());
+        Assert.assertEquals("aes", WechatContext.getEncryptType());
+    }
+
+    @Test
+    public void testWrapCallerRuns() throws Exception {
+        // 占满线程池，后续任务由调用线程执行
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+        WechatContext.setEncryptType("aes");
+        Thread caller = Thread.currentThread();
+        WechatContext.Snapshot snapshot = WechatContext.snapshot();
+        Thread runner = CompletableFuture.supplyAsync(snapshot.wrap(Thread::currentThread), pool)
+                .get();
+        release.countDown();
+        Assert.assertSame(caller, runner);
+        // 请求线程的上下文不能被清除
+        Assert.assertEquals("aes", WechatContext.getEncryptType());
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.fengjx.modules.wechat.process.utils;
+
+import com.fengjx.commons.plugin.db.Record;
+import com.fengjx.modules.wechat.bean.WechatRespMsgAction;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KeywordMatcherTest {
+
+    private KeywordMatcher matcher;
+
+    @Before
+    public void setUp() {
+        List<Map<String, Object>> actions = new ArrayList<>();
+        actions.add(action("1", WechatRespMsgAction.FUZZY_EXACT, "天气"));
+        actions.add(action("2", WechatRespMsgAction.FUZZY_CONTAIN, "笑话"));
+        actions.add(action("3", WechatRespMsgAction.FUZZY_START, "天气"));
+        actions.add(action("4", WechatRespMsgAction.FUZZY_END, "音乐"));
+        actions.add(action("5", WechatRespMsgAction.FUZZY_CONTAIN, "广州"));
+        matcher = new KeywordMatcher(actions);
+    }
+
+    @Test
+    public void testMatching() {
+        Assert.assertEquals("1", matcher.matching("天气").getStr("id"));
+        Assert.assertEquals("3", matcher.matching("天气广州").getStr("id"));
+        Assert.assertEquals("4", matcher.matching("来点音乐").getStr("id"));
+        Assert.assertEquals("5", matcher.matching("广州音乐会").getStr("id"));
+        Assert.assertNull(matcher.matching("你好"));
+    }
+
+    @Test
+    public void testOrder() {
+        // 多条规则同时满足时，取排序靠前的规则
+        Assert.assertEquals("2", matcher.matching("天气讲个笑话").getStr("id"));
+        Assert.assertEquals("2", matcher.matching("广州笑话音乐").getStr("id"));
+    }
+
+    private Map<String, Object> action(String id, String fuzzy, String keyword) {
+        Map<String, Object> action = new HashMap<>();
+        action.put("id", id);
+        action.put("fuzzy", fuzzy);
+        action.put("key_word", keyword);
+        return action;
+    }
+
+}